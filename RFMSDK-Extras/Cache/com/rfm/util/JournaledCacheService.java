@@ -0,0 +1,710 @@
+/*
+ * Copyright (c) 2016. Rubicon Project. All rights reserved
+ *
+ */
+
+package com.rfm.util;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Disk cache for creative assets backed by one journal index file and a few append only segment files.
+ *
+ * Entries become visible only once their data is synced and the journal line is written, so a crash
+ * while caching leaves the previous state intact. Entries are evicted in LRU order once the total size
+ * exceeds the limit, and entries read repeatedly are served from memory mapped segments. Sealed segments
+ * which are mostly dead are compacted by copying their live entries to a new segment, so disk usage
+ * stays close to the size of the live entries.
+ *
+ * Data is streamed to a temporary file before the cache is locked, and compaction copies entries on the
+ * background thread, reads never wait for a download or a compaction.
+ *
+ * There is one instance per process, the journal is replayed on a background thread. Until it is
+ * loaded the cache behaves as empty and rejects writes.
+ *
+ * Use it with RFMCacheManager.get(key, type, JournaledCacheService.instance(context)) and
+ * RFMCacheManager.cache(key, data, JournaledCacheService.instance(context)).
+ */
+public class JournaledCacheService implements CacheServiceIF<CacheData> {
+    private static final String LOG_TAG = "JournaledCacheService";
+    private static final String CACHE_DIR = "rfm_journal_cache";
+    private static final String JOURNAL_FILE = "journal";
+    private static final String JOURNAL_TMP_FILE = "journal.tmp";
+    private static final String SEGMENT_PREFIX = "segment.";
+    private static final String TMP_PREFIX = "tmp.";
+    private static final String JOURNAL_CHARSET = "UTF-8";
+    private static final String OP_PUT = "PUT";
+    private static final String OP_DEL = "DEL";
+
+    private static final long DEFAULT_MAX_SIZE = 20 * 1024 * 1024;
+    private static final long MAX_SEGMENT_SIZE = 4 * 1024 * 1024;
+    private static final float COMPACT_LIVE_RATIO = 0.5f;
+    private static final int HOT_HIT_COUNT = 2;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static JournaledCacheService sInstance;
+
+    private final File mCacheDir;
+    private final long mMaxSize;
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Integer, Long> mSegmentLiveBytes = new HashMap<>();
+    private final Map<String, MappedByteBuffer> mMappedEntries = new HashMap<>();
+    private Writer mJournalWriter;
+    private int mJournalOps;
+    private int mCurrentSegment;
+    private int mNextSegment;
+    private int mCompactingSegment = -1;
+    private long mTotalSize;
+    private volatile boolean mLoaded;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, LOG_TAG);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    /**
+     * Process wide cache service, only one instance may own the cache directory
+     *
+     * @param context
+     * @return cache service, its journal may still be loading
+     */
+    public static synchronized JournaledCacheService instance(Context context) {
+        if(sInstance == null) {
+            sInstance = new JournaledCacheService(new File(context.getCacheDir(), CACHE_DIR).getAbsolutePath(), DEFAULT_MAX_SIZE);
+        }
+        return sInstance;
+    }
+
+    private JournaledCacheService(String cacheDirPath, long maxSize) {
+        mCacheDir = new File(cacheDirPath);
+        mMaxSize = maxSize;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    /**
+     * Check if the journal was replayed, the cache is empty and rejects writes until then
+     */
+    public boolean isLoaded() {
+        return mLoaded;
+    }
+
+    @Override
+    public boolean cacheData(String key, CacheData data) {
+        if(key == null || data == null || data.getInputStream() == null || !mLoaded) {
+            return false;
+        }
+        File tmpFile = null;
+        InputStream in = null;
+        try {
+            // Drain the source outside the lock, it may be a slow network stream
+            tmpFile = File.createTempFile(TMP_PREFIX, null, mCacheDir);
+            FileOutputStream out = new FileOutputStream(tmpFile);
+            try {
+                copy(data.getInputStream(), out);
+            } finally {
+                closeQuietly(out);
+            }
+
+            in = new FileInputStream(tmpFile);
+            synchronized (this) {
+                if(mJournalWriter == null) {
+                    return false;
+                }
+                // The entry is committed once its journal line is written
+                Entry entry = appendToSegment(in, data.getDataType());
+                writeJournal(getPutLine(key, entry));
+                putEntry(key, entry);
+                trimToSize();
+                compactSegments();
+                compactJournalIfNeeded();
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            Log.v(LOG_TAG, "Failed to write cache entry for " + key);
+            return false;
+        } finally {
+            closeQuietly(in);
+            if(tmpFile != null && !tmpFile.delete()) {
+                Log.v(LOG_TAG, "Failed to delete temporary cache file " + tmpFile.getName());
+            }
+        }
+    }
+
+    @Override
+    public synchronized CacheData getData(String key, int type) {
+        if(!mLoaded) {
+            return null;
+        }
+        Entry entry = mEntries.get(key);
+        if(entry == null || entry.type != type) {
+            return null;
+        }
+        entry.hits++;
+        try {
+            InputStream in;
+            MappedByteBuffer mapped = mMappedEntries.get(key);
+            if(mapped == null && entry.hits >= HOT_HIT_COUNT) {
+                mapped = mapEntry(entry);
+                mMappedEntries.put(key, mapped);
+            }
+            if(mapped != null) {
+                in = new ByteBufferInputStream(mapped.duplicate());
+            } else {
+                in = new SegmentInputStream(getSegmentFile(entry.segment), entry.offset, entry.length);
+            }
+            return new CacheData(key, in, entry.type);
+        } catch (IOException e) {
+            e.printStackTrace();
+            Log.v(LOG_TAG, "Failed to read cache entry for " + key);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized boolean removeData(String key) {
+        if(!mLoaded || !mEntries.containsKey(key)) {
+            return false;
+        }
+        try {
+            writeJournal(OP_DEL + " " + key);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        removeEntry(key);
+        compactSegments();
+        compactJournalIfNeeded();
+        return true;
+    }
+
+    /**
+     * Total size of the cached entries
+     *
+     * @return size in bytes
+     */
+    public synchronized long getSize() {
+        return mTotalSize;
+    }
+
+    /**
+     * Utility method to create the cache directory and replay the journal, runs on the background thread
+     */
+    private synchronized void load() {
+        if(!mCacheDir.exists() && !mCacheDir.mkdirs()) {
+            Log.v(LOG_TAG, "Failed to create cache directory " + mCacheDir.getAbsolutePath());
+        }
+        readJournal();
+        mLoaded = true;
+    }
+
+    /**
+     * Utility method to rebuild the index from the journal, partially written lines are ignored
+     */
+    private void readJournal() {
+        deleteTmpFiles();
+        File journal = new File(mCacheDir, JOURNAL_FILE);
+        if(journal.exists()) {
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), JOURNAL_CHARSET));
+                String line;
+                while((line = reader.readLine()) != null) {
+                    replayJournalLine(line);
+                    mJournalOps++;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                Log.v(LOG_TAG, "Failed to read cache journal");
+            } finally {
+                closeQuietly(reader);
+            }
+        }
+
+        for(Integer segment : mSegmentLiveBytes.keySet()) {
+            mCurrentSegment = Math.max(mCurrentSegment, segment);
+        }
+        mNextSegment = mCurrentSegment + 1;
+        deleteUnusedSegments();
+        try {
+            rewriteJournal();
+        } catch (IOException e) {
+            e.printStackTrace();
+            Log.v(LOG_TAG, "Failed to open cache journal, caching disabled");
+        }
+    }
+
+    /**
+     * Utility method to delete temporary files left behind by a crash while caching
+     */
+    private void deleteTmpFiles() {
+        File[] files = mCacheDir.listFiles();
+        if(files == null) {
+            return;
+        }
+        for(File file : files) {
+            if(file.getName().startsWith(TMP_PREFIX) && !file.delete()) {
+                Log.v(LOG_TAG, "Failed to delete temporary cache file " + file.getName());
+            }
+        }
+    }
+
+    private void replayJournalLine(String line) {
+        String[] parts = line.split(" ", 6);
+        try {
+            if(OP_PUT.equals(parts[0]) && parts.length == 6) {
+                Entry entry = new Entry(Integer.parseInt(parts[1]), Long.parseLong(parts[2]),
+                        Long.parseLong(parts[3]), Integer.parseInt(parts[4]));
+                if(getSegmentFile(entry.segment).length() >= entry.offset + entry.length) {
+                    putEntry(parts[5], entry);
+                }
+            } else if(OP_DEL.equals(parts[0]) && parts.length >= 2) {
+                removeEntry(line.substring(OP_DEL.length() + 1));
+            }
+        } catch (NumberFormatException e) {
+            Log.v(LOG_TAG, "Skipping invalid cache journal line");
+        }
+    }
+
+    private void putEntry(String key, Entry entry) {
+        removeEntry(key);
+        mEntries.put(key, entry);
+        mTotalSize += entry.length;
+        Long liveBytes = mSegmentLiveBytes.get(entry.segment);
+        mSegmentLiveBytes.put(entry.segment, (liveBytes == null ? 0 : liveBytes) + entry.length);
+    }
+
+    private void removeEntry(String key) {
+        Entry entry = mEntries.remove(key);
+        mMappedEntries.remove(key);
+        if(entry == null) {
+            return;
+        }
+        mTotalSize -= entry.length;
+        Long liveBytes = mSegmentLiveBytes.get(entry.segment);
+        if(liveBytes != null) {
+            mSegmentLiveBytes.put(entry.segment, liveBytes - entry.length);
+        }
+    }
+
+    /**
+     * Utility method to evict least recently used entries until the cache fits in the max size
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> eldest = mEntries.entrySet().iterator();
+        while(mTotalSize > mMaxSize && eldest.hasNext()) {
+            Map.Entry<String, Entry> cached = eldest.next();
+            String key = cached.getKey();
+            Entry entry = cached.getValue();
+            try {
+                writeJournal(OP_DEL + " " + key);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            Log.v(LOG_TAG, "Evicting cache entry " + key);
+            eldest.remove();
+            mMappedEntries.remove(key);
+            mTotalSize -= entry.length;
+            mSegmentLiveBytes.put(entry.segment, mSegmentLiveBytes.get(entry.segment) - entry.length);
+        }
+    }
+
+    /**
+     * Utility method to schedule the compaction of a sealed segment which is mostly dead, and delete
+     * segments without live entries. One segment is compacted at a time.
+     */
+    private void compactSegments() {
+        deleteUnusedSegments();
+        if(mCompactingSegment != -1) {
+            return;
+        }
+        for(Map.Entry<Integer, Long> segmentLiveBytes : mSegmentLiveBytes.entrySet()) {
+            final int segment = segmentLiveBytes.getKey();
+            long liveBytes = segmentLiveBytes.getValue();
+            if(segment != mCurrentSegment && liveBytes > 0
+                    && liveBytes < getSegmentFile(segment).length() * COMPACT_LIVE_RATIO) {
+                final List<Map.Entry<String, Entry>> moving = new ArrayList<>();
+                for(Map.Entry<String, Entry> cached : mEntries.entrySet()) {
+                    if(cached.getValue().segment == segment) {
+                        moving.add(new AbstractMap.SimpleEntry<>(cached.getKey(), cached.getValue()));
+                    }
+                }
+                mCompactingSegment = segment;
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        relocateSegment(segment, moving);
+                    }
+                });
+                return;
+            }
+        }
+    }
+
+    /**
+     * Utility method to copy the live entries of a segment to a new segment, runs on the background thread.
+     * The copy is synced once and done without the lock, the segment being compacted is not deleted
+     * meanwhile. The new locations are then journaled for the entries which are still cached, and those
+     * are updated in place to keep their LRU position.
+     */
+    private void relocateSegment(int segment, List<Map.Entry<String, Entry>> moving) {
+        Log.v(LOG_TAG, "Compacting cache segment " + segment + " with " + moving.size() + " live entries");
+        File tmpFile = null;
+        long[] offsets = new long[moving.size()];
+        try {
+            tmpFile = File.createTempFile(TMP_PREFIX, null, mCacheDir);
+            FileOutputStream out = new FileOutputStream(tmpFile);
+            try {
+                long offset = 0;
+                for(int i = 0; i < moving.size(); i++) {
+                    Entry entry = moving.get(i).getValue();
+                    InputStream in = new SegmentInputStream(getSegmentFile(segment), entry.offset, entry.length);
+                    try {
+                        offsets[i] = offset;
+                        offset += copy(in, out);
+                    } finally {
+                        closeQuietly(in);
+                    }
+                }
+                out.getFD().sync();
+            } finally {
+                closeQuietly(out);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            Log.v(LOG_TAG, "Failed to compact cache segment " + segment);
+            if(tmpFile != null && !tmpFile.delete()) {
+                Log.v(LOG_TAG, "Failed to delete temporary cache file " + tmpFile.getName());
+            }
+            synchronized (this) {
+                mCompactingSegment = -1;
+            }
+            return;
+        }
+
+        synchronized (this) {
+            mCompactingSegment = -1;
+            int target = mNextSegment++;
+            if(!tmpFile.renameTo(getSegmentFile(target))) {
+                Log.v(LOG_TAG, "Failed to create cache segment " + target);
+                if(!tmpFile.delete()) {
+                    Log.v(LOG_TAG, "Failed to delete temporary cache file " + tmpFile.getName());
+                }
+                return;
+            }
+            // Entries removed or replaced during the copy are left behind as dead bytes
+            List<String> lines = new ArrayList<>();
+            for(int i = 0; i < moving.size(); i++) {
+                String key = moving.get(i).getKey();
+                Entry entry = moving.get(i).getValue();
+                if(mEntries.get(key) == entry) {
+                    lines.add(getPutLine(key, new Entry(target, offsets[i], entry.length, entry.type)));
+                }
+            }
+            try {
+                writeJournal(lines);
+            } catch (IOException e) {
+                e.printStackTrace();
+                Log.v(LOG_TAG, "Failed to journal compacted cache segment " + segment);
+                deleteUnusedSegments();
+                return;
+            }
+            long liveBytes = 0;
+            for(int i = 0; i < moving.size(); i++) {
+                String key = moving.get(i).getKey();
+                Entry entry = moving.get(i).getValue();
+                if(mEntries.get(key) == entry) {
+                    entry.segment = target;
+                    entry.offset = offsets[i];
+                    liveBytes += entry.length;
+                    mMappedEntries.remove(key);
+                }
+            }
+            mSegmentLiveBytes.put(segment, mSegmentLiveBytes.get(segment) - liveBytes);
+            mSegmentLiveBytes.put(target, liveBytes);
+            compactSegments();
+            compactJournalIfNeeded();
+        }
+    }
+
+    /**
+     * Utility method to append data to the current segment and sync it, a full segment is sealed first
+     *
+     * @return location of the data, not yet committed to the journal
+     */
+    private Entry appendToSegment(InputStream in, int type) throws IOException {
+        File segment = getSegmentFile(mCurrentSegment);
+        if(segment.length() >= MAX_SEGMENT_SIZE) {
+            mCurrentSegment = mNextSegment++;
+            segment = getSegmentFile(mCurrentSegment);
+        }
+        long offset = segment.length();
+        FileOutputStream out = new FileOutputStream(segment, true);
+        try {
+            long length = copy(in, out);
+            out.getFD().sync();
+            return new Entry(mCurrentSegment, offset, length, type);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long length = 0;
+        int read;
+        while((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            length += read;
+        }
+        return length;
+    }
+
+    private static String getPutLine(String key, Entry entry) {
+        return OP_PUT + " " + entry.segment + " " + entry.offset + " " + entry.length + " " + entry.type + " " + key;
+    }
+
+    /**
+     * Utility method to delete segments which hold no live entry, the segments being written or compacted are kept
+     */
+    private void deleteUnusedSegments() {
+        File[] files = mCacheDir.listFiles();
+        if(files == null) {
+            return;
+        }
+        for(File file : files) {
+            String name = file.getName();
+            if(!name.startsWith(SEGMENT_PREFIX)) {
+                continue;
+            }
+            try {
+                int segment = Integer.parseInt(name.substring(SEGMENT_PREFIX.length()));
+                Long liveBytes = mSegmentLiveBytes.get(segment);
+                if(segment != mCurrentSegment && segment != mCompactingSegment
+                        && (liveBytes == null || liveBytes <= 0)) {
+                    mSegmentLiveBytes.remove(segment);
+                    if(!file.delete()) {
+                        Log.v(LOG_TAG, "Failed to delete cache segment " + name);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                Log.v(LOG_TAG, "Unknown file in cache directory " + name);
+            }
+        }
+    }
+
+    private void writeJournal(String line) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(line);
+        writeJournal(lines);
+    }
+
+    private void writeJournal(List<String> lines) throws IOException {
+        if(mJournalWriter == null) {
+            throw new IOException("Cache journal not available");
+        }
+        for(String line : lines) {
+            mJournalWriter.write(line);
+            mJournalWriter.write('\n');
+        }
+        mJournalWriter.flush();
+        mJournalOps += lines.size();
+    }
+
+    private void compactJournalIfNeeded() {
+        if(mJournalOps > 2 * mEntries.size() + 100) {
+            try {
+                rewriteJournal();
+            } catch (IOException e) {
+                e.printStackTrace();
+                Log.v(LOG_TAG, "Failed to compact cache journal");
+            }
+        }
+    }
+
+    /**
+     * Utility method to write the live entries to a new journal and atomically replace the old one.
+     * If the journal cannot be replaced, appending to the old journal continues.
+     */
+    private void rewriteJournal() throws IOException {
+        File tmpJournal = new File(mCacheDir, JOURNAL_TMP_FILE);
+        FileOutputStream out = new FileOutputStream(tmpJournal);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, JOURNAL_CHARSET));
+        try {
+            for(Map.Entry<String, Entry> cached : mEntries.entrySet()) {
+                writer.write(getPutLine(cached.getKey(), cached.getValue()) + "\n");
+            }
+            writer.flush();
+            out.getFD().sync();
+        } finally {
+            closeQuietly(writer);
+        }
+
+        closeQuietly(mJournalWriter);
+        mJournalWriter = null;
+        File journal = new File(mCacheDir, JOURNAL_FILE);
+        boolean replaced = tmpJournal.renameTo(journal);
+        mJournalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journal, true), JOURNAL_CHARSET));
+        if(!replaced) {
+            throw new IOException("Failed to replace cache journal");
+        }
+        mJournalOps = mEntries.size();
+    }
+
+    private MappedByteBuffer mapEntry(Entry entry) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(getSegmentFile(entry.segment), "r");
+        try {
+            return file.getChannel().map(FileChannel.MapMode.READ_ONLY, entry.offset, entry.length);
+        } finally {
+            closeQuietly(file);
+        }
+    }
+
+    private File getSegmentFile(int segment) {
+        return new File(mCacheDir, SEGMENT_PREFIX + segment);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.v(LOG_TAG, "Failed to close cache file");
+            }
+        }
+    }
+
+    /**
+     * Location of one cached entry inside a segment file
+     */
+    private static class Entry {
+        int segment;
+        long offset;
+        final long length;
+        final int type;
+        int hits;
+
+        Entry(int segment, long offset, long length, int type) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Stream over one entry of a segment file
+     */
+    private static class SegmentInputStream extends InputStream {
+        private final FileInputStream mIn;
+        private long mRemaining;
+
+        SegmentInputStream(File segment, long offset, long length) throws IOException {
+            mIn = new FileInputStream(segment);
+            mIn.getChannel().position(offset);
+            mRemaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(mRemaining <= 0) {
+                return -1;
+            }
+            int value = mIn.read();
+            if(value != -1) {
+                mRemaining--;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            if(mRemaining <= 0) {
+                return -1;
+            }
+            int read = mIn.read(buffer, offset, (int) Math.min(count, mRemaining));
+            if(read > 0) {
+                mRemaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(mRemaining, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            mIn.close();
+        }
+    }
+
+    /**
+     * Stream over a memory mapped entry
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer mBuffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) {
+            if(!mBuffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(count, mBuffer.remaining());
+            mBuffer.get(buffer, offset, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+    }
+}
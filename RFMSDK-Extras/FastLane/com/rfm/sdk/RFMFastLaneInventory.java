@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2016. Rubicon Project. All rights reserved
+ *
+ */
+
+package com.rfm.sdk;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Map;
+
+/**
+ * Keeps a pre-fetched RFMFastLane ad warm for one placement.
+ *
+ * RFM SDK caches only one pre-fetched response per RFM app Id, a new pre-fetch replaces the previous
+ * one. The inventory therefore holds at most one ad, and only one inventory should be used per app Id.
+ * The pre-fetched ad expires after the configured TTL, a new one is pre-fetched as soon as the ad is
+ * handed out or expired. After a failed pre-fetch no new pre-fetch is started until the retry backoff
+ * has passed.
+ *
+ * Creating an RFMFastLane clears all cached FastLane responses, so the inventory creates a single
+ * RFMFastLane for its Activity. Create it in Activity.onCreate and stop it in Activity.onDestroy.
+ *
+ * All methods must be called from the main thread.
+ */
+public class RFMFastLaneInventory {
+    private static final String LOG_TAG = "RFMFastLaneInventory";
+    private static final long DEFAULT_TTL = 5 * 60 * 1000;
+    private static final long MIN_RETRY_DELAY = 2000;
+    private static final long MAX_RETRY_DELAY = 60 * 1000;
+
+    private final RFMFastLane mFastLane;
+    private final RFMAdRequest mAdRequest;
+    private final long mTtl;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private InventoryAd mAd;
+    private InventoryListener mPendingListener;
+    private boolean mStarted;
+    private long mRetryDelay = MIN_RETRY_DELAY;
+    private long mRetryAt;
+    private long mHitCount;
+    private long mMissCount;
+    private long mExpiredCount;
+
+    private final Runnable mExpiryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            purgeExpired();
+            refill();
+        }
+    };
+
+    private final Runnable mRetryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refill();
+        }
+    };
+
+    /**
+     * Inventory with the default TTL of 5 minutes
+     *
+     * @param activity
+     * @param adRequest request used for every pre-fetch of this placement
+     */
+    public RFMFastLaneInventory(Activity activity, RFMAdRequest adRequest) {
+        this(activity, adRequest, DEFAULT_TTL);
+    }
+
+    /**
+     * @param activity
+     * @param adRequest request used for every pre-fetch of this placement
+     * @param ttl time in ms a pre-fetched ad can be used
+     */
+    public RFMFastLaneInventory(Activity activity, RFMAdRequest adRequest, long ttl) {
+        mFastLane = new RFMFastLane(activity);
+        mAdRequest = adRequest;
+        mTtl = ttl;
+    }
+
+    /**
+     * Start filling the inventory
+     */
+    public void start() {
+        if(mStarted) {
+            return;
+        }
+        mStarted = true;
+        refill();
+    }
+
+    /**
+     * Stop filling the inventory and drop the pre-fetched ad
+     */
+    public void stop() {
+        mStarted = false;
+        mHandler.removeCallbacks(mExpiryRunnable);
+        mHandler.removeCallbacks(mRetryRunnable);
+        mAd = null;
+        mPendingListener = null;
+        mRetryAt = 0;
+        mRetryDelay = MIN_RETRY_DELAY;
+    }
+
+    /**
+     * Hand out the pre-fetched ad if it is still valid
+     *
+     * @return FastLane targeting of the ad, null if no valid ad is available
+     */
+    public Map<String, String> nextAd() {
+        purgeExpired();
+        InventoryAd ad = mAd;
+        mAd = null;
+        if(ad == null) {
+            mMissCount++;
+            Log.v(LOG_TAG, "No FastLane ad available in inventory");
+        } else {
+            mHitCount++;
+        }
+        refill();
+        return ad != null ? ad.targeting : null;
+    }
+
+    /**
+     * Number of valid ads currently in the inventory
+     *
+     * @return 1 if a valid pre-fetched ad is available, 0 otherwise
+     */
+    public int getDepth() {
+        purgeExpired();
+        return mAd != null ? 1 : 0;
+    }
+
+    /**
+     * Number of pre-fetched ads which expired before being used
+     */
+    public long getExpiredCount() {
+        return mExpiredCount;
+    }
+
+    /**
+     * Number of nextAd calls which returned an ad
+     */
+    public long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Number of nextAd calls which found the inventory empty
+     */
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Ratio of nextAd calls which returned an ad
+     *
+     * @return hit rate between 0 and 1, 0 if nextAd was never called
+     */
+    public float getHitRate() {
+        long requests = mHitCount + mMissCount;
+        return requests == 0 ? 0 : (float) mHitCount / requests;
+    }
+
+    /**
+     * Utility method to drop the pre-fetched ad once it expired
+     */
+    private void purgeExpired() {
+        if(mAd != null && mAd.expiresAt <= SystemClock.elapsedRealtime()) {
+            mAd = null;
+            mExpiredCount++;
+            Log.v(LOG_TAG, "FastLane ad expired before use");
+        }
+    }
+
+    /**
+     * Utility method to pre-fetch an ad if the inventory is empty, nothing is pre-fetched during a retry backoff
+     */
+    private void refill() {
+        if(!mStarted) {
+            return;
+        }
+        if(mAd == null && mPendingListener == null && SystemClock.elapsedRealtime() >= mRetryAt) {
+            mPendingListener = new InventoryListener();
+            mFastLane.preFetchAd(mAdRequest, mPendingListener);
+        }
+        scheduleExpiryCheck();
+    }
+
+    private void scheduleExpiryCheck() {
+        mHandler.removeCallbacks(mExpiryRunnable);
+        if(mAd != null) {
+            mHandler.postDelayed(mExpiryRunnable, Math.max(0, mAd.expiresAt - SystemClock.elapsedRealtime()));
+        }
+    }
+
+    private void onAdReceived(InventoryListener listener, Map<String, String> targeting) {
+        if(!mStarted || listener != mPendingListener) {
+            return;
+        }
+        mPendingListener = null;
+        mRetryDelay = MIN_RETRY_DELAY;
+        mRetryAt = 0;
+        mHandler.removeCallbacks(mRetryRunnable);
+        mAd = new InventoryAd(targeting, SystemClock.elapsedRealtime() + mTtl);
+        Log.v(LOG_TAG, "FastLane ad pre-fetched");
+        scheduleExpiryCheck();
+    }
+
+    private void onAdFailed(InventoryListener listener, String errorMessage) {
+        if(!mStarted || listener != mPendingListener) {
+            return;
+        }
+        mPendingListener = null;
+        Log.v(LOG_TAG, "FastLane pre-fetch failed: " + errorMessage + ", retrying in " + mRetryDelay + " ms");
+        mRetryAt = SystemClock.elapsedRealtime() + mRetryDelay;
+        mHandler.removeCallbacks(mRetryRunnable);
+        mHandler.postDelayed(mRetryRunnable, mRetryDelay);
+        mRetryDelay = Math.min(mRetryDelay * 2, MAX_RETRY_DELAY);
+    }
+
+    /**
+     * Pre-fetched ad and its expiry time
+     */
+    private static class InventoryAd {
+        final Map<String, String> targeting;
+        final long expiresAt;
+
+        InventoryAd(Map<String, String> targeting, long expiresAt) {
+            this.targeting = targeting;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Listener for one pre-fetch, callbacks are moved to the main thread
+     */
+    private class InventoryListener implements RFMFastLane.RFMFastLaneAdListener {
+        @Override
+        public void onAdReceived(final Map<String, String> targeting) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    RFMFastLaneInventory.this.onAdReceived(InventoryListener.this, targeting);
+                }
+            });
+        }
+
+        @Override
+        public void onAdFailed(final String errorMessage) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    RFMFastLaneInventory.this.onAdFailed(InventoryListener.this, errorMessage);
+                }
+            });
+        }
+    }
+}
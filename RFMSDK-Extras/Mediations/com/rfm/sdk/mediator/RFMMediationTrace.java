@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2016. Rubicon Project. All rights reserved
+ *
+ */
+
+package com.rfm.sdk.mediator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lightweight latency tracing for custom mediation.
+ *
+ * Spans are timed with the monotonic System.nanoTime clock and kept in a fixed size lock free
+ * ring buffer, the oldest spans are overwritten. Tracing is disabled by default, start then
+ * returns a shared no-op span without allocating.
+ *
+ * Usage, named by the class name of the traced component:
+ * RFMMediationTrace.ActiveSpan trace = RFMMediationTrace.start(RFMMediationTrace.STAGE_MEDIATION, getClass().getName());
+ * ...
+ * trace.end(true);
+ */
+public final class RFMMediationTrace {
+    public static final String STAGE_MEDIATION = "mediation";
+    public static final String STAGE_PARALLEL_TIER = "parallelTier";
+    public static final String STAGE_FIRST_FILL = "firstFill";
+    public static final String STAGE_PARTNER_INIT = "partnerInit";
+
+    private static final int BUFFER_SIZE = 256;
+    private static final ActiveSpan NO_SPAN = new ActiveSpan(null, null, 0);
+
+    private static final AtomicReferenceArray<Span> sSpans = new AtomicReferenceArray<>(BUFFER_SIZE);
+    private static final AtomicLong sSequence = new AtomicLong();
+    private static volatile boolean sEnabled;
+    private static volatile SpanExporter sExporter;
+
+    private RFMMediationTrace() {
+    }
+
+    /**
+     * Receives every finished span, called on the thread which ended the span so it must return quickly
+     */
+    public interface SpanExporter {
+        void export(Span span);
+    }
+
+    /**
+     * One timed stage of an ad request
+     */
+    public static final class Span {
+        public final String stage;
+        public final String name;
+        public final long startNanos;
+        public final long durationNanos;
+        public final boolean success;
+
+        Span(String stage, String name, long startNanos, long durationNanos, boolean success) {
+            this.stage = stage;
+            this.name = name;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.success = success;
+        }
+
+        @Override
+        public String toString() {
+            return stage + ":" + name + " " + (durationNanos / 1000000) + " ms" + (success ? "" : " failed");
+        }
+    }
+
+    /**
+     * Span in progress, only the first end is recorded so every outcome callback may end it
+     */
+    public static final class ActiveSpan {
+        private final String mStage;
+        private final String mName;
+        private final long mStartNanos;
+        private final AtomicBoolean mEnded = new AtomicBoolean();
+
+        ActiveSpan(String stage, String name, long startNanos) {
+            mStage = stage;
+            mName = name;
+            mStartNanos = startNanos;
+        }
+
+        /**
+         * Start time, to time a nested stage with end(String, String, long, boolean)
+         *
+         * @return 0 if tracing was disabled when the span was started
+         */
+        public long getStartNanos() {
+            return mStartNanos;
+        }
+
+        /**
+         * Finish the span, calls after the first one are ignored
+         *
+         * @param success false if the stage failed or timed out
+         */
+        public void end(boolean success) {
+            if(mStartNanos != 0 && mEnded.compareAndSet(false, true)) {
+                RFMMediationTrace.end(mStage, mName, mStartNanos, success);
+            }
+        }
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Set the exporter for finished spans
+     *
+     * @param exporter null to only keep spans in the ring buffer
+     */
+    public static void setExporter(SpanExporter exporter) {
+        sExporter = exporter;
+    }
+
+    /**
+     * Start a span which is ended through its handle
+     *
+     * @param stage stage of the ad request, e.g. STAGE_MEDIATION
+     * @param name class name of the traced component
+     * @return span handle, a no-op span if tracing is disabled
+     */
+    public static ActiveSpan start(String stage, String name) {
+        return sEnabled ? new ActiveSpan(stage, name, System.nanoTime()) : NO_SPAN;
+    }
+
+    /**
+     * Finish a span timed from a known start, e.g. a stage nested in an ActiveSpan
+     *
+     * @param stage stage of the ad request, e.g. STAGE_FIRST_FILL
+     * @param name class name of the traced component, e.g. the mediator
+     * @param startNanos start time, 0 if tracing was disabled
+     * @param success false if the stage failed or timed out
+     */
+    public static void end(String stage, String name, long startNanos, boolean success) {
+        if(!sEnabled || startNanos == 0) {
+            return;
+        }
+        Span span = new Span(stage, name, startNanos, System.nanoTime() - startNanos, success);
+        sSpans.set((int) (sSequence.getAndIncrement() % BUFFER_SIZE), span);
+        SpanExporter exporter = sExporter;
+        if(exporter != null) {
+            exporter.export(span);
+        }
+    }
+
+    /**
+     * Copy of the spans currently held in the ring buffer, oldest first
+     */
+    public static List<Span> getSpans() {
+        long sequence = sSequence.get();
+        long first = Math.max(0, sequence - BUFFER_SIZE);
+        List<Span> spans = new ArrayList<>();
+        for(long index = first; index < sequence; index++) {
+            Span span = sSpans.get((int) (index % BUFFER_SIZE));
+            if(span != null) {
+                spans.add(span);
+            }
+        }
+        return spans;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2016. Rubicon Project. All rights reserved
+ *
+ */
+
+package com.rfm.sdk.mediator;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Initializes partner SDKs of custom mediators once, on a background thread, at app start.
+ *
+ * Call warmup from Application.onCreate with the mediators enabled on RFMAdRequest. Partner SDKs which
+ * need an app Id, e.g. InMobi, are only initialized ahead of the first request if the app Id is passed:
+ * Map<String, String> mediators = new HashMap<>();
+ * mediators.put(RFMAdRequest.MEDIATOR_INM_BANNER, "your InMobi app Id");
+ * mediators.put(RFMAdRequest.MEDIATOR_MOPUB_BANNER, null);
+ * RFMMediationWarmup.warmup(context, mediators);
+ *
+ * An ad request never blocks the main thread on a partner SDK initialization running on the warmup
+ * thread, the mediator loads its ad once the initialization completed.
+ *
+ * A mediator takes part in the partner SDK initialization by declaring
+ * public static void initializePartner(Context context, String appId)
+ * Mediators without it are only class loaded through RFMMediatorRegistry.
+ */
+public final class RFMMediationWarmup {
+    private static final String LOG_TAG = "RFMMediationWarmup";
+    private static final String INITIALIZE_METHOD = "initializePartner";
+
+    private static final Map<String, Long> sInitLatencies = new ConcurrentHashMap<>();
+    private static final Set<String> sInitializedPartners = new HashSet<>();
+    private static ExecutorService sExecutor;
+
+    private RFMMediationWarmup() {
+    }
+
+    /**
+     * Warm up mediators which need no partner app Id, use warmup(Context, Map) for InMobi
+     *
+     * @param context
+     * @param mediators mediator class names, e.g. RFMAdRequest.MEDIATOR_MOPUB_BANNER
+     */
+    public static void warmup(Context context, String... mediators) {
+        Map<String, String> mediatorAppIds = new LinkedHashMap<>();
+        for(String mediator : mediators) {
+            mediatorAppIds.put(mediator, null);
+        }
+        warmup(context, mediatorAppIds);
+    }
+
+    /**
+     * Warm up the mediators on a background thread
+     *
+     * @param context
+     * @param mediatorAppIds mediator class name to partner app Id, null only for partners which need no app Id
+     */
+    public static void warmup(Context context, Map<String, String> mediatorAppIds) {
+        final Context appContext = context.getApplicationContext();
+        RFMMediatorHealth.init(appContext);
+        ExecutorService executor = getExecutor();
+        for(final Map.Entry<String, String> mediator : mediatorAppIds.entrySet()) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    warmupMediator(appContext, mediator.getKey(), mediator.getValue());
+                }
+            });
+        }
+    }
+
+    /**
+     * Time spent to warm up each mediator
+     *
+     * @return mediator class name to init latency in ms
+     */
+    public static Map<String, Long> getInitLatencies() {
+        return Collections.unmodifiableMap(new HashMap<>(sInitLatencies));
+    }
+
+    /**
+     * Check if a partner SDK was already initialized, used by mediators to skip per request init
+     *
+     * @param partnerKey partner SDK specific key, e.g. partner name and app Id
+     * @return true if setPartnerInitialized was called for the key
+     */
+    public static boolean isPartnerInitialized(String partnerKey) {
+        synchronized (sInitializedPartners) {
+            return sInitializedPartners.contains(partnerKey);
+        }
+    }
+
+    /**
+     * Record that a partner SDK was initialized
+     *
+     * @param partnerKey partner SDK specific key, e.g. partner name and app Id
+     */
+    public static void setPartnerInitialized(String partnerKey) {
+        synchronized (sInitializedPartners) {
+            sInitializedPartners.add(partnerKey);
+        }
+    }
+
+    /**
+     * Run a task on the warmup thread, used to keep disk reads of the mediators off the main thread
+     *
+     * @param task
+     */
+    static void execute(Runnable task) {
+        getExecutor().execute(task);
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if(sExecutor == null) {
+            sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, LOG_TAG);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+
+    /**
+     * Utility method to warm up one mediator and record its init latency
+     */
+    private static void warmupMediator(Context context, String mediator, String appId) {
+        long startTime = SystemClock.elapsedRealtime();
+        RFMMediationTrace.ActiveSpan trace = RFMMediationTrace.start(RFMMediationTrace.STAGE_PARTNER_INIT, mediator);
+        if(!RFMMediatorRegistry.prewarm(mediator)) {
+            trace.end(false);
+            return;
+        }
+        boolean initialized = true;
+        try {
+            Method initialize = Class.forName(mediator).getMethod(INITIALIZE_METHOD, Context.class, String.class);
+            initialize.invoke(null, context, appId);
+        } catch (NoSuchMethodException e) {
+            Log.v(LOG_TAG, "No partner SDK init for " + mediator);
+        } catch (Exception e) {
+            e.printStackTrace();
+            Log.v(LOG_TAG, "Failed to initialize partner SDK for " + mediator);
+            initialized = false;
+        }
+        trace.end(initialized);
+        long latency = SystemClock.elapsedRealtime() - startTime;
+        sInitLatencies.put(mediator, latency);
+        Log.v(LOG_TAG, "Warmed up " + mediator + " in " + latency + " ms");
+    }
+}
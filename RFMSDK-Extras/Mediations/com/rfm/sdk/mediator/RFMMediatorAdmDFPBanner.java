@@ -25,6 +25,7 @@ public class RFMMediatorAdmDFPBanner implements RFMCustomBanner {
     private PublisherAdView mPubAdView;
     private static final String LOG_TAG = "RFMMediatorAdmDFPBanner";
     private static final String PARAM_AD_ID = "adUnitId";
+    private RFMMediationTrace.ActiveSpan mTrace;
     private AdView mBannerAd;
 
     /**
@@ -39,6 +40,7 @@ public class RFMMediatorAdmDFPBanner implements RFMCustomBanner {
 
         mContext = context;
         mListener = listener;
+        mTrace = RFMMediationTrace.start(RFMMediationTrace.STAGE_MEDIATION, getClass().getName());
         // Create a Banner Ad
         if(createBannerAd(params)) {
             // Add a listener for callbacks
@@ -46,6 +48,7 @@ public class RFMMediatorAdmDFPBanner implements RFMCustomBanner {
             // request Ad
             loadAd();
         } else {
+            mTrace.end(false);
             if(mListener != null) {
                 mListener.onAdFailed("Failed to request DFP Ad, site Id missing");
             }
@@ -108,6 +111,7 @@ public class RFMMediatorAdmDFPBanner implements RFMCustomBanner {
             @Override
             public void onAdLoaded() {
                 Log.d(LOG_TAG, "DFP Banner Ad loaded from RFMSDK");
+                mTrace.end(true);
                 if (mListener != null) {
                     mListener.onAdLoaded(mPubAdView);
                 }
@@ -117,6 +121,7 @@ public class RFMMediatorAdmDFPBanner implements RFMCustomBanner {
             @Override
             public void onAdFailedToLoad(int errorCode) {
                 Log.d(LOG_TAG, "DFP Banner Ad failed from RFMSDK");
+                mTrace.end(false);
                 if (mListener != null) {
                     mListener.onAdFailed("DFP Banner failed with error code " + errorCode);
                 }
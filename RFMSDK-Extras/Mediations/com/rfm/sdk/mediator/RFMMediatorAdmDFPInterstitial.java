@@ -25,6 +25,8 @@ public class RFMMediatorAdmDFPInterstitial implements RFMCustomInterstitial {
     private static final String LOG_TAG = "AdmDfpInterstitial";
     private static final String TEST_DEVICE_ID = "2CC6189A7D478F739F11622ECCB6EB5F";
     private static final String PARAM_AD_ID = "adUnitId";
+    private boolean mAdReady;
+    private RFMMediationTrace.ActiveSpan mTrace;
 
     /**
      * Implementation for requesting Interstitial Ad from Admob via RFM Custom event
@@ -37,6 +39,7 @@ public class RFMMediatorAdmDFPInterstitial implements RFMCustomInterstitial {
     public void requestAd(Context context, Map<String, String> params, RFMCustomInterstitialListener listener) {
         mContext = context;
         mListener = listener;
+        mTrace = RFMMediationTrace.start(RFMMediationTrace.STAGE_MEDIATION, getClass().getName());
         // Create an Interstitial Ad
         if(createInterstitial(params)) {
             // Add a listener for callbacks
@@ -44,6 +47,7 @@ public class RFMMediatorAdmDFPInterstitial implements RFMCustomInterstitial {
             // request Ad
             loadAd();
         } else {
+            mTrace.end(false);
             if(mListener != null) {
                 mListener.onAdFailed("Failed to request DFP Interstitial, site Id missing");
             }
@@ -56,6 +60,7 @@ public class RFMMediatorAdmDFPInterstitial implements RFMCustomInterstitial {
      */
     @Override
     public void reset() {
+        mAdReady = false;
         if(mInterstitialAd != null) {
             mInterstitialAd.setAdListener(null);
             mInterstitialAd = null;
@@ -71,7 +76,7 @@ public class RFMMediatorAdmDFPInterstitial implements RFMCustomInterstitial {
      */
     @Override
     public boolean display() {
-        if(mInterstitialAd != null) {
+        if(isReady()) {
             mInterstitialAd.show();
             if(mListener != null) {
                 mListener.onAdDisplayed();
@@ -81,6 +86,16 @@ public class RFMMediatorAdmDFPInterstitial implements RFMCustomInterstitial {
         return false;
     }
 
+    /**
+     * Utility method to check if the Ad finished loading and can be displayed. Apps check
+     * RFMAdView.isAdAvailableToDisplay() before calling RFMAdView.displayAd()
+     *
+     * @return true once onAdLoaded was reported, until the Ad is reset
+     */
+    private boolean isReady() {
+        return mAdReady && mInterstitialAd != null && mInterstitialAd.isLoaded();
+    }
+
     /**
      * Utility method to create Interstitial Ad
      *
@@ -114,6 +129,8 @@ public class RFMMediatorAdmDFPInterstitial implements RFMCustomInterstitial {
             @Override
             public void onAdLoaded() {
                 Log.d(LOG_TAG, "DFP Interstitial onAdLoaded");
+                mAdReady = true;
+                mTrace.end(true);
                 if (mListener != null) {
                     mListener.onAdLoaded();
                 }
@@ -124,7 +141,9 @@ public class RFMMediatorAdmDFPInterstitial implements RFMCustomInterstitial {
             public void onAdFailedToLoad(int errorCode) {
                 String message = String.format("DFP InterstitialonAdFailedToLoad (%s)", getErrorReason(errorCode));
                 Log.d(LOG_TAG, message);
+                mAdReady = false;
                 //Toast.makeText(InterstitialAdActivity.this, message, Toast.LENGTH_SHORT).show();
+                mTrace.end(false);
                 if (mListener != null) {
                     mListener.onAdFailed("EDFP Interstitial error code " + errorCode);
                 }
@@ -24,6 +24,7 @@ public class RFMMediatorFBANBanner implements RFMCustomBanner {
     private AdView mBannerAd;
     private static final String LOG_TAG = "RFMMediatorFBANBanner";
     private static final String PARAM_AD_ID = "placementId";
+    private RFMMediationTrace.ActiveSpan mTrace;
 
     /**
      * Implementation for requesting Banner Ad from FBAN via RFM Custom event
@@ -36,10 +37,12 @@ public class RFMMediatorFBANBanner implements RFMCustomBanner {
     public void requestAd(Context context, Map<String, String> params, RFMCustomBannerListener listener) {
         mContext = context;
         mListener = listener;
+        mTrace = RFMMediationTrace.start(RFMMediationTrace.STAGE_MEDIATION, getClass().getName());
         if(createBannerAd(params)) {
             createAdListener();
             loadAd();
         } else {
+            mTrace.end(false);
             if(mListener != null) {
                 mListener.onAdFailed("Failed to request FBAN Banner, placement Id missing");
             }
@@ -55,6 +58,7 @@ public class RFMMediatorFBANBanner implements RFMCustomBanner {
         if(mBannerAd != null) {
             mBannerAd.destroy();
             mBannerAd.setAdListener(null);
+            mBannerAd = null;
             mContext=null;
             Log.v(LOG_TAG, "Clean up FBAN Banner");
         }
@@ -100,6 +104,7 @@ public class RFMMediatorFBANBanner implements RFMCustomBanner {
             @Override
             public void onError(Ad ad, AdError adError) {
                 Log.d(LOG_TAG, "FB Banner Ad failed");
+                mTrace.end(false);
                 if (mListener != null) {
                     mListener.onAdFailed("FB Banner failed with error code " + adError.getErrorCode()+ " and message "+adError.getErrorMessage());
                 }
@@ -108,6 +113,7 @@ public class RFMMediatorFBANBanner implements RFMCustomBanner {
             @Override
             public void onAdLoaded(Ad ad) {
                 Log.d(LOG_TAG, "FB Banner Ad loaded");
+                mTrace.end(true);
                 if(mListener != null) {
                     mListener.onAdLoaded(mBannerAd);
                 }
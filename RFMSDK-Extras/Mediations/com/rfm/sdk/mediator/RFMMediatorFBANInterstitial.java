@@ -24,6 +24,8 @@ public class RFMMediatorFBANInterstitial implements RFMCustomInterstitial {
     private InterstitialAd mInterstitialAd;
     private static final String LOG_TAG = "FBANInterstitial";
     private static final String PARAM_AD_ID = "placementId";
+    private boolean mAdReady;
+    private RFMMediationTrace.ActiveSpan mTrace;
 
     /**
      * Implementation for requesting Interstitial Ad from FBAN via RFM Custom event
@@ -36,10 +38,12 @@ public class RFMMediatorFBANInterstitial implements RFMCustomInterstitial {
     public void requestAd(Context context, Map<String, String> params, RFMCustomInterstitialListener listener) {
         mContext = context;
         mListener = listener;
+        mTrace = RFMMediationTrace.start(RFMMediationTrace.STAGE_MEDIATION, getClass().getName());
         if(createInterstitial(params)) {
             createAdListener();
             loadAd();
         } else {
+            mTrace.end(false);
             if(mListener != null) {
                 mListener.onAdFailed("Failed to request FBAN Interstitial, placement Id missing");
             }
@@ -52,6 +56,7 @@ public class RFMMediatorFBANInterstitial implements RFMCustomInterstitial {
      */
     @Override
     public void reset() {
+        mAdReady = false;
         if (mInterstitialAd != null) {
             mInterstitialAd.destroy();
             mInterstitialAd = null;
@@ -67,13 +72,23 @@ public class RFMMediatorFBANInterstitial implements RFMCustomInterstitial {
      */
     @Override
     public boolean display() {
-        if(mInterstitialAd != null) {
+        if(isReady()) {
             mInterstitialAd.show();
             return true;
         }
         return false;
     }
 
+    /**
+     * Utility method to check if the Ad finished loading and can be displayed. Apps check
+     * RFMAdView.isAdAvailableToDisplay() before calling RFMAdView.displayAd()
+     *
+     * @return true once onAdLoaded was reported, until the Ad is reset
+     */
+    private boolean isReady() {
+        return mAdReady && mInterstitialAd != null && mInterstitialAd.isAdLoaded();
+    }
+
 
     /**
      * Utility method to create Interstitial Ad
@@ -125,6 +140,8 @@ public class RFMMediatorFBANInterstitial implements RFMCustomInterstitial {
             @Override
             public void onError(Ad ad, AdError adError) {
                 Log.d(LOG_TAG, "FBAN Interstitial Ad failed");
+                mAdReady = false;
+                mTrace.end(false);
                 if (mListener != null) {
                     mListener.onAdFailed("FBAN Interstitial failed with error code " + adError.getErrorCode()+ " and message "+adError.getErrorMessage());
                 }
@@ -133,6 +150,8 @@ public class RFMMediatorFBANInterstitial implements RFMCustomInterstitial {
             @Override
             public void onAdLoaded(Ad ad) {
                 Log.d(LOG_TAG, "FBAN Interstitial Ad loaded");
+                mAdReady = true;
+                mTrace.end(true);
                 if(mListener != null) {
                     mListener.onAdLoaded();
                 }
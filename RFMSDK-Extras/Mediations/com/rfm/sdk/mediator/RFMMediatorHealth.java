@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2016. Rubicon Project. All rights reserved
+ *
+ */
+
+package com.rfm.sdk.mediator;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per mediator fill latency histogram, fill rate and circuit breaker, persisted across app launches.
+ *
+ * A mediator which fails CONSECUTIVE_FAILURES times in a row is skipped for a while. Once that
+ * period is over a single probe request is allowed, a fill closes the breaker and a failure opens
+ * it again for twice as long. A probe which never reports back is retried after the base open time.
+ *
+ * Latency samples and request counters are halved once they exceed DECAY_WINDOW, so the adaptive
+ * timeout and fill rate follow a partner whose performance changes. Timed out requests are counted as
+ * latency samples at the time they were given up, requests abandoned because another mediator won
+ * are counted without an outcome and do not affect the fill rate.
+ */
+public final class RFMMediatorHealth {
+    private static final String LOG_TAG = "RFMMediatorHealth";
+    private static final String SHARED_PREFERENCE_NAME = "rfm_mediator_health";
+    private static final int CONSECUTIVE_FAILURES = 3;
+    private static final long BASE_OPEN_TIME = 60 * 1000;
+    private static final long MAX_OPEN_TIME = 30 * 60 * 1000;
+    private static final int MIN_SAMPLES = 10;
+    private static final long MIN_TIMEOUT = 500;
+    private static final float TIMEOUT_HEADROOM = 1.2f;
+    private static final int DECAY_WINDOW = 200;
+    private static final long[] BUCKET_BOUNDS = {100, 200, 300, 500, 750, 1000, 1500, 2000, 3000, 4000, 6000, 8000, 10000};
+
+    private static final Map<String, MediatorStats> sStats = new HashMap<>();
+    private static SharedPreferences sPreferences;
+    private static boolean sLoadScheduled;
+
+    private RFMMediatorHealth() {
+    }
+
+    /**
+     * Load the persisted state on the RFMMediationWarmup thread, only the first call has an effect.
+     * Until it is loaded mediators start without history.
+     *
+     * @param context
+     */
+    public static synchronized void init(Context context) {
+        if(sLoadScheduled || context == null) {
+            return;
+        }
+        sLoadScheduled = true;
+        final Context appContext = context.getApplicationContext();
+        RFMMediationWarmup.execute(new Runnable() {
+            @Override
+            public void run() {
+                load(appContext);
+            }
+        });
+    }
+
+    /**
+     * Utility method to read the persisted state without holding the lock, stats recorded
+     * meanwhile are newer and are kept
+     */
+    private static void load(Context context) {
+        SharedPreferences preferences = context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE);
+        Map<String, ?> saved = preferences.getAll();
+        synchronized (RFMMediatorHealth.class) {
+            for(Map.Entry<String, ?> savedStats : saved.entrySet()) {
+                MediatorStats stats = MediatorStats.fromString(String.valueOf(savedStats.getValue()));
+                if(stats != null && !sStats.containsKey(savedStats.getKey())) {
+                    sStats.put(savedStats.getKey(), stats);
+                }
+            }
+            sPreferences = preferences;
+        }
+    }
+
+    /**
+     * Check if a mediator may be requested, a mediator with an expired open breaker is let through once as probe
+     *
+     * @param mediator mediator class name
+     * @return false while the circuit breaker of the mediator is open
+     */
+    public static synchronized boolean isAvailable(String mediator) {
+        MediatorStats stats = sStats.get(mediator);
+        if(stats == null || stats.openUntil == 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if(now < stats.openUntil || now < stats.probeStartedAt + BASE_OPEN_TIME) {
+            return false;
+        }
+        stats.probeStartedAt = now;
+        Log.v(LOG_TAG, "Probing mediator " + mediator + " after open circuit");
+        return true;
+    }
+
+    /**
+     * Timeout derived from the p95 fill latency of the mediator
+     *
+     * @param mediator mediator class name
+     * @param maxTimeout timeout to use until enough latency samples are available, and upper bound
+     * @return timeout in ms
+     */
+    public static synchronized long getTimeout(String mediator, long maxTimeout) {
+        MediatorStats stats = sStats.get(mediator);
+        if(stats == null || stats.getSampleCount() < MIN_SAMPLES) {
+            return maxTimeout;
+        }
+        long timeout = (long) (stats.getP95() * TIMEOUT_HEADROOM);
+        return Math.min(maxTimeout, Math.max(MIN_TIMEOUT, timeout));
+    }
+
+    /**
+     * Fill rate of a mediator
+     *
+     * @param mediator mediator class name
+     * @return fills per request with an outcome between 0 and 1, -1 if no request had an outcome yet
+     */
+    public static synchronized float getFillRate(String mediator) {
+        MediatorStats stats = sStats.get(mediator);
+        if(stats == null || stats.requests - stats.abandoned <= 0) {
+            return -1;
+        }
+        return (float) stats.fills / (stats.requests - stats.abandoned);
+    }
+
+    /**
+     * Record a successful ad load of a mediator
+     *
+     * @param mediator mediator class name
+     * @param latency time from request to load in ms
+     */
+    public static synchronized void recordFill(String mediator, long latency) {
+        MediatorStats stats = getStats(mediator);
+        stats.requests++;
+        stats.fills++;
+        stats.decayRequests();
+        stats.addLatency(latency);
+        stats.consecutiveFailures = 0;
+        stats.openUntil = 0;
+        stats.openCount = 0;
+        stats.probeStartedAt = 0;
+        save(mediator, stats);
+    }
+
+    /**
+     * Record a failed or timed out ad request of a mediator, failures are not part of the latency histogram
+     *
+     * @param mediator mediator class name
+     */
+    public static synchronized void recordFailure(String mediator) {
+        MediatorStats stats = getStats(mediator);
+        stats.requests++;
+        stats.decayRequests();
+        addFailure(mediator, stats);
+        save(mediator, stats);
+    }
+
+    /**
+     * Record an ad request of a mediator which was given up after a timeout, counted as failure and as
+     * latency sample at the time it was given up so the adaptive timeout can grow again
+     *
+     * @param mediator mediator class name
+     * @param elapsed time from request to timeout in ms
+     */
+    public static synchronized void recordTimeout(String mediator, long elapsed) {
+        MediatorStats stats = getStats(mediator);
+        stats.requests++;
+        stats.decayRequests();
+        stats.addLatency(elapsed);
+        addFailure(mediator, stats);
+        save(mediator, stats);
+    }
+
+    /**
+     * Record an ad request of a mediator which was abandoned before it loaded or failed, e.g. because
+     * another mediator won the tier. The request has no outcome and does not affect the fill rate.
+     *
+     * @param mediator mediator class name
+     */
+    public static synchronized void recordNoOutcome(String mediator) {
+        MediatorStats stats = getStats(mediator);
+        stats.requests++;
+        stats.abandoned++;
+        stats.decayRequests();
+        if(stats.probeStartedAt != 0) {
+            // Let the next request probe again
+            stats.probeStartedAt = 0;
+        }
+        save(mediator, stats);
+    }
+
+    /**
+     * Utility method to count a failure, the circuit opens after CONSECUTIVE_FAILURES or a failed probe
+     */
+    private static void addFailure(String mediator, MediatorStats stats) {
+        stats.consecutiveFailures++;
+        if(stats.probeStartedAt != 0 || stats.consecutiveFailures >= CONSECUTIVE_FAILURES) {
+            long openTime = Math.min(MAX_OPEN_TIME, BASE_OPEN_TIME << Math.min(stats.openCount, 16));
+            stats.openUntil = System.currentTimeMillis() + openTime;
+            stats.openCount++;
+            stats.probeStartedAt = 0;
+            Log.v(LOG_TAG, "Opening circuit for mediator " + mediator + " for " + openTime + " ms");
+        }
+    }
+
+    private static MediatorStats getStats(String mediator) {
+        MediatorStats stats = sStats.get(mediator);
+        if(stats == null) {
+            stats = new MediatorStats();
+            sStats.put(mediator, stats);
+        }
+        return stats;
+    }
+
+    private static void save(String mediator, MediatorStats stats) {
+        if(sPreferences != null) {
+            sPreferences.edit().putString(mediator, stats.toString()).apply();
+        }
+    }
+
+    /**
+     * Latency histogram, fill counters and breaker state of one mediator
+     */
+    static class MediatorStats {
+        final long[] buckets = new long[BUCKET_BOUNDS.length + 1];
+        long requests;
+        long fills;
+        long abandoned;
+        int consecutiveFailures;
+        long openUntil;
+        int openCount;
+        long probeStartedAt;
+
+        void addLatency(long latency) {
+            int bucket = 0;
+            while(bucket < BUCKET_BOUNDS.length && latency > BUCKET_BOUNDS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket]++;
+            if(getSampleCount() > DECAY_WINDOW) {
+                for(int index = 0; index < buckets.length; index++) {
+                    buckets[index] /= 2;
+                }
+            }
+        }
+
+        /**
+         * Halve the request counters once they exceed the window, call after all counters of a request are updated
+         */
+        void decayRequests() {
+            if(requests > DECAY_WINDOW) {
+                requests /= 2;
+                fills /= 2;
+                abandoned /= 2;
+            }
+        }
+
+        long getSampleCount() {
+            long count = 0;
+            for(long bucket : buckets) {
+                count += bucket;
+            }
+            return count;
+        }
+
+        /**
+         * Upper bound of the histogram bucket holding the 95th percentile
+         */
+        long getP95() {
+            long target = (long) Math.ceil(getSampleCount() * 0.95);
+            long count = 0;
+            for(int bucket = 0; bucket < BUCKET_BOUNDS.length; bucket++) {
+                count += buckets[bucket];
+                if(count >= target) {
+                    return BUCKET_BOUNDS[bucket];
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(requests).append(',').append(fills).append(',').append(consecutiveFailures)
+                    .append(',').append(openUntil).append(',').append(openCount).append(',');
+            for(int bucket = 0; bucket < buckets.length; bucket++) {
+                if(bucket > 0) {
+                    builder.append(';');
+                }
+                builder.append(buckets[bucket]);
+            }
+            builder.append(',').append(abandoned);
+            return builder.toString();
+        }
+
+        static MediatorStats fromString(String saved) {
+            try {
+                String[] parts = saved.split(",");
+                String[] savedBuckets = parts[5].split(";");
+                MediatorStats stats = new MediatorStats();
+                stats.requests = Long.parseLong(parts[0]);
+                stats.fills = Long.parseLong(parts[1]);
+                stats.consecutiveFailures = Integer.parseInt(parts[2]);
+                stats.openUntil = Long.parseLong(parts[3]);
+                stats.openCount = Integer.parseInt(parts[4]);
+                stats.abandoned = parts.length > 6 ? Long.parseLong(parts[6]) : 0;
+                for(int bucket = 0; bucket < Math.min(savedBuckets.length, stats.buckets.length); bucket++) {
+                    stats.buckets[bucket] = Long.parseLong(savedBuckets[bucket]);
+                }
+                return stats;
+            } catch (Exception e) {
+                Log.v(LOG_TAG, "Ignoring invalid saved mediator health " + saved);
+                return null;
+            }
+        }
+    }
+}
@@ -9,7 +9,6 @@ import android.app.Activity;
 import android.content.Context;
 import android.util.Log;
 
-import com.inmobi.commons.InMobi;
 import com.inmobi.monetization.IMBanner;
 import com.inmobi.monetization.IMBannerListener;
 import com.inmobi.monetization.IMErrorCode;
@@ -25,6 +24,8 @@ public class RFMMediatorInMobiBanner implements RFMCustomBanner {
     RFMCustomBannerListener mListener;
     private static final String LOG_TAG = "RFMMediatorInMobiBanner";
     private static final String PARAM_AD_ID = "appId";
+    private RFMMediationTrace.ActiveSpan mTrace;
+    private Runnable mPendingLoad;
 
     /**
      * Implementation for requesting Banner Ad from InMobi via RFM Custom event
@@ -34,19 +35,41 @@ public class RFMMediatorInMobiBanner implements RFMCustomBanner {
      * @param listener
      */
    @Override
-    public void requestAd(Context context, Map<String, String> params, RFMCustomBannerListener listener) {
+    public void requestAd(Context context, final Map<String, String> params, RFMCustomBannerListener listener) {
         Log.v("RFMMediatorInMobiBanner", " Requesting Ad from RFMMediatorInMobiBanner ");
         mContext = context;
         mListener = listener;
-       if(createBannerAd(params)) {
-           createAdListener();
-           loadAd();
-       } else {
-           if(mListener != null) {
-               mListener.onAdFailed("Failed to request Inmobi Banner Ad, app Id missing");
-           }
-       }
-   }
+        mTrace = RFMMediationTrace.start(RFMMediationTrace.STAGE_MEDIATION, getClass().getName());
+        String appId = params != null ? params.get(PARAM_AD_ID) : null;
+        if(appId == null) {
+            onRequestFailed();
+            return;
+        }
+        // The load waits for an InMobi SDK initialization running on the warmup thread
+        mPendingLoad = new Runnable() {
+            @Override
+            public void run() {
+                if(mPendingLoad != this) {
+                    return;
+                }
+                mPendingLoad = null;
+                if(createBannerAd(params)) {
+                    createAdListener();
+                    loadAd();
+                } else {
+                    onRequestFailed();
+                }
+            }
+        };
+        RFMMediatorInMobiPartner.initializeForRequest(mContext, appId, mPendingLoad);
+    }
+
+    private void onRequestFailed() {
+        mTrace.end(false);
+        if(mListener != null) {
+            mListener.onAdFailed("Failed to request Inmobi Banner Ad, app Id missing");
+        }
+    }
 
     /**
      * Called when Ad / UI containing Ad is closed
@@ -54,10 +77,12 @@ public class RFMMediatorInMobiBanner implements RFMCustomBanner {
      */
     @Override
     public void reset() {
+        mPendingLoad = null;
         if(bannerAd != null) {
             bannerAd.setIMBannerListener(null);
             bannerAd.destroy();
             bannerAd.stopLoading();
+            bannerAd = null;
             mContext=null;
             Log.v(LOG_TAG, "Clean up Inmobi Banner");
         }
@@ -96,8 +121,6 @@ public class RFMMediatorInMobiBanner implements RFMCustomBanner {
             return false;
         }
 
-
-        InMobi.initialize(mContext, appId);
         bannerAd = new IMBanner((Activity)mContext, 0);
         bannerAd.setAppId(appId);
         bannerAd.setAdSize(getAdSize(adParams));
@@ -121,6 +144,7 @@ public class RFMMediatorInMobiBanner implements RFMCustomBanner {
             @Override
             public void onBannerRequestFailed(IMBanner arg0, IMErrorCode eCode) {
                 Log.v(LOG_TAG, "InMobiMediatior banner request Failed ");
+                mTrace.end(false);
                 if (mListener != null) {
                     mListener.onAdFailed("Error code " + eCode.name());
                 }
@@ -129,6 +153,7 @@ public class RFMMediatorInMobiBanner implements RFMCustomBanner {
             @Override
             public void onBannerRequestSucceeded(IMBanner arg0) {
                 Log.v(LOG_TAG, "InMobiMediatior banner request Succeeded ");
+                mTrace.end(true);
                 if (mListener != null) {
                     mListener.onAdLoaded(bannerAd);
                 }
@@ -206,6 +231,16 @@ public class RFMMediatorInMobiBanner implements RFMCustomBanner {
         return 15;
     }
 
+    /**
+     * Initialize InMobi SDK once per app Id, called by RFMMediationWarmup on its background thread
+     *
+     * @param context
+     * @param appId InMobi app Id, required
+     */
+    public static void initializePartner(Context context, String appId) {
+        RFMMediatorInMobiPartner.initialize(context, appId);
+    }
+
     /**
      * Utility method to print all the parameters sent from RFM SDK
      * @param params
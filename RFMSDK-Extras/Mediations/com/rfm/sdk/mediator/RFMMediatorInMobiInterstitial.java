@@ -9,7 +9,6 @@ import android.app.Activity;
 import android.content.Context;
 import android.util.Log;
 
-import com.inmobi.commons.InMobi;
 import com.inmobi.monetization.IMErrorCode;
 import com.inmobi.monetization.IMInterstitial;
 import com.inmobi.monetization.IMInterstitialListener;
@@ -25,6 +24,9 @@ public class RFMMediatorInMobiInterstitial implements RFMCustomInterstitial {
     RFMCustomInterstitialListener mListener;
     private static final String LOG_TAG = "InMobiInterstitial";
     private static final String PARAM_AD_ID = "appId";
+    private boolean mAdReady;
+    private RFMMediationTrace.ActiveSpan mTrace;
+    private Runnable mPendingLoad;
 
     /**
      * Implementation for requesting Interstitial Ad from Admob via RFM Custom event
@@ -34,17 +36,39 @@ public class RFMMediatorInMobiInterstitial implements RFMCustomInterstitial {
      * @param listener
      **/
     @Override
-    public void requestAd(Context context, Map<String, String> params, RFMCustomInterstitialListener listener) {
+    public void requestAd(Context context, final Map<String, String> params, RFMCustomInterstitialListener listener) {
         Log.v("RFMMediatorInMobiBanner", " Requesting Ad from RFMMediatorInMobiBanner ");
         mContext = context;
         mListener = listener;
-        if(createInterstitial(params)) {
-            createAdListener();
-            loadAd();
-        } else {
-            if(mListener != null) {
-                mListener.onAdFailed("Failed to request InMobi Interstitial, app Id missing");
+        mTrace = RFMMediationTrace.start(RFMMediationTrace.STAGE_MEDIATION, getClass().getName());
+        String appId = params != null ? params.get(PARAM_AD_ID) : null;
+        if(appId == null) {
+            onRequestFailed();
+            return;
+        }
+        // The load waits for an InMobi SDK initialization running on the warmup thread
+        mPendingLoad = new Runnable() {
+            @Override
+            public void run() {
+                if(mPendingLoad != this) {
+                    return;
+                }
+                mPendingLoad = null;
+                if(createInterstitial(params)) {
+                    createAdListener();
+                    loadAd();
+                } else {
+                    onRequestFailed();
+                }
             }
+        };
+        RFMMediatorInMobiPartner.initializeForRequest(mContext, appId, mPendingLoad);
+    }
+
+    private void onRequestFailed() {
+        mTrace.end(false);
+        if(mListener != null) {
+            mListener.onAdFailed("Failed to request InMobi Interstitial, app Id missing");
         }
     }
 
@@ -54,9 +78,12 @@ public class RFMMediatorInMobiInterstitial implements RFMCustomInterstitial {
      */
     @Override
     public void reset() {
+        mPendingLoad = null;
+        mAdReady = false;
         if(mInterstitial != null) {
             mInterstitial.setIMInterstitialListener(null);
             mInterstitial.stopLoading();
+            mInterstitial = null;
             mContext=null;
             Log.v(LOG_TAG, "Clean up Inmobi Intersitital");
         }
@@ -69,13 +96,23 @@ public class RFMMediatorInMobiInterstitial implements RFMCustomInterstitial {
      */
     @Override
     public boolean display() {
-        if(mInterstitial != null) {
+        if(isReady()) {
             mInterstitial.show();
             return true;
         }
         return false;
     }
 
+    /**
+     * Utility method to check if the Ad finished loading and can be displayed. Apps check
+     * RFMAdView.isAdAvailableToDisplay() before calling RFMAdView.displayAd()
+     *
+     * @return true once onAdLoaded was reported, until the Ad is shown or reset
+     */
+    private boolean isReady() {
+        return mAdReady && mInterstitial != null && mInterstitial.getState() == IMInterstitial.State.READY;
+    }
+
     /**
      * Utility method to create Interstitial Ad
      *
@@ -92,8 +129,7 @@ public class RFMMediatorInMobiInterstitial implements RFMCustomInterstitial {
         if(appId == null) {
             return false;
         }
-        
-        InMobi.initialize(mContext, appId);
+
         mInterstitial = new IMInterstitial((Activity)mContext, appId);
         return true;
     }
@@ -119,6 +155,8 @@ public class RFMMediatorInMobiInterstitial implements RFMCustomInterstitial {
             @Override
             public void onInterstitialFailed(IMInterstitial arg0, IMErrorCode eCode) {
                 Log.v(LOG_TAG, "InMobiMediatior mInterstitial failed");
+                mAdReady = false;
+                mTrace.end(false);
                 if(mListener != null) {
                     mListener.onAdFailed("Failed to display Interstitial from InMobi, InMobi "+eCode);
                 }
@@ -137,6 +175,8 @@ public class RFMMediatorInMobiInterstitial implements RFMCustomInterstitial {
             @Override
             public void onInterstitialLoaded(IMInterstitial arg0) {
                 Log.v(LOG_TAG, "InMobiMediatior mInterstitial loaded");
+                mAdReady = true;
+                mTrace.end(true);
                 if(mListener !=null) {
                     mListener.onAdLoaded();
                 }
@@ -160,6 +200,16 @@ public class RFMMediatorInMobiInterstitial implements RFMCustomInterstitial {
         mInterstitial.loadInterstitial();
     }
 
+    /**
+     * Initialize InMobi SDK once per app Id, called by RFMMediationWarmup on its background thread
+     *
+     * @param context
+     * @param appId InMobi app Id, required
+     */
+    public static void initializePartner(Context context, String appId) {
+        RFMMediatorInMobiPartner.initialize(context, appId);
+    }
+
     /**
      * Utility method to print all the parameters sent from RFM SDK
      */
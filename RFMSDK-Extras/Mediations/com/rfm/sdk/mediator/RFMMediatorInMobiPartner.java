@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016. Rubicon Project. All rights reserved
+ *
+ */
+
+package com.rfm.sdk.mediator;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.inmobi.commons.InMobi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * InMobi SDK initialization shared by the InMobi banner and interstitial mediators.
+ *
+ * The SDK is initialized once per app Id, ideally by RFMMediationWarmup on its background thread.
+ * The ad request path never waits for an initialization running on the warmup thread, the ad is
+ * loaded once it completed.
+ */
+final class RFMMediatorInMobiPartner {
+    private static final String LOG_TAG = "RFMMediatorInMobiPartner";
+    private static final String PARTNER_KEY_PREFIX = "InMobi:";
+    private static final Object sInitLock = new Object();
+    private static final List<Runnable> sDeferredRequests = new ArrayList<>();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private static boolean sInitializing;
+
+    private RFMMediatorInMobiPartner() {
+    }
+
+    /**
+     * Initialize InMobi SDK, waits for an initialization in progress, used by RFMMediationWarmup
+     *
+     * @param context
+     * @param appId InMobi app Id, required
+     */
+    static void initialize(Context context, String appId) {
+        if(appId == null) {
+            Log.w(LOG_TAG, "InMobi app Id missing, pass it to RFMMediationWarmup to initialize InMobi ahead of the first request");
+            return;
+        }
+        String partnerKey = PARTNER_KEY_PREFIX + appId;
+        synchronized (sInitLock) {
+            while(sInitializing) {
+                try {
+                    sInitLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if(RFMMediationWarmup.isPartnerInitialized(partnerKey)) {
+                return;
+            }
+            sInitializing = true;
+        }
+
+        List<Runnable> deferredRequests;
+        try {
+            InMobi.initialize(context, appId);
+            RFMMediationWarmup.setPartnerInitialized(partnerKey);
+        } finally {
+            synchronized (sInitLock) {
+                sInitializing = false;
+                deferredRequests = new ArrayList<>(sDeferredRequests);
+                sDeferredRequests.clear();
+                sInitLock.notifyAll();
+            }
+        }
+        for(Runnable request : deferredRequests) {
+            sMainHandler.post(request);
+        }
+    }
+
+    /**
+     * Initialize InMobi SDK on the ad request path, must be called from the main thread
+     *
+     * @param context
+     * @param appId InMobi app Id, required
+     * @param onInitialized loads the ad, run right away unless the SDK is being initialized on the warmup
+     *                      thread, then it is posted to the main thread once that completed
+     */
+    static void initializeForRequest(final Context context, final String appId, final Runnable onInitialized) {
+        String partnerKey = PARTNER_KEY_PREFIX + appId;
+        synchronized (sInitLock) {
+            if(sInitializing) {
+                Log.v(LOG_TAG, "InMobi SDK initialization in progress on the warmup thread, deferring ad request");
+                sDeferredRequests.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        initializeForRequest(context, appId, onInitialized);
+                    }
+                });
+                return;
+            }
+            if(!RFMMediationWarmup.isPartnerInitialized(partnerKey)) {
+                InMobi.initialize(context, appId);
+                RFMMediationWarmup.setPartnerInitialized(partnerKey);
+            }
+        }
+        onInitialized.run();
+    }
+}
@@ -35,6 +35,7 @@ public class RFMMediatorMiMBanner implements RFMCustomBanner {
     private MMAdView mAdView;
     protected static final String LOG_TAG = "MiMBannerMediator";
     protected static final String PARAM_AD_ID = "apId";
+    private RFMMediationTrace.ActiveSpan mTrace;
     protected static final String PARAM_METADATA = "metadata";
 
     /**
@@ -49,11 +50,13 @@ public class RFMMediatorMiMBanner implements RFMCustomBanner {
         Log.v(LOG_TAG, "Requesting Ad from MIMiMediator ");
         mContext = context;
         mListener = listener;
+        mTrace = RFMMediationTrace.start(RFMMediationTrace.STAGE_MEDIATION, getClass().getName());
 
         if(createBannerAd(params)) {
             createAdListener();
             loadAd();
         } else {
+            mTrace.end(false);
             if(mListener != null) {
                 mListener.onAdFailed("Failed to request MIM Banner Ad, app Id missing");
             }
@@ -163,6 +166,7 @@ public class RFMMediatorMiMBanner implements RFMCustomBanner {
             @Override
             public void requestCompleted(MMAd mmAd) {
                 Log.i(MMSDK.SDKLOG, "Millennial Media Ad (" + mmAd.getApid() + ") request completed & succeeded");
+                mTrace.end(true);
                 if (mListener != null) {
                     mListener.onAdLoaded(mAdView);
                 }
@@ -171,6 +175,7 @@ public class RFMMediatorMiMBanner implements RFMCustomBanner {
             @Override
             public void requestFailed(MMAd mmAd, MMException e) {
                 Log.i(MMSDK.SDKLOG, String.format("Millennial Media Ad (" + mmAd.getApid() + ") request failed with error: %d %s.", e.getCode(), e.getMessage()));
+                mTrace.end(false);
                 if (mListener != null) {
                     mListener.onAdFailed("Error code " + e.toString());
                 }
@@ -265,6 +270,16 @@ public class RFMMediatorMiMBanner implements RFMCustomBanner {
         return metaData;
     }
 
+    /**
+     * Initialize Millennial SDK once, called by RFMMediationWarmup on its background thread
+     *
+     * @param context
+     * @param appId not used by Millennial SDK init
+     */
+    public static void initializePartner(Context context, String appId) {
+        RFMMediatorMiMPartner.initialize(context);
+    }
+
     /**
      * Utility method to print parameters sent from RFM SDK
      * @param params
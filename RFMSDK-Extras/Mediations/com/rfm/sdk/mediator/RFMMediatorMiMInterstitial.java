@@ -23,6 +23,8 @@ public class RFMMediatorMiMInterstitial implements RFMCustomInterstitial {
     RFMCustomInterstitialListener mListener;
     private static final String LOG_TAG = "MiMInterstitial";
     private static final String PARAM_AD_ID = "apId";
+    private boolean mAdReady;
+    private RFMMediationTrace.ActiveSpan mTrace;
 
     // The ad view object
     private MMInterstitial interstitial;
@@ -38,10 +40,12 @@ public class RFMMediatorMiMInterstitial implements RFMCustomInterstitial {
     public void requestAd(Context context, Map<String, String> params, RFMCustomInterstitialListener listener) {
         mContext = context;
         mListener = listener;
+        mTrace = RFMMediationTrace.start(RFMMediationTrace.STAGE_MEDIATION, getClass().getName());
         if(createInterstitialAd(params)) {
             createAdListener();
             loadAd();
         } else {
+            mTrace.end(false);
             if(mListener != null) {
                 mListener.onAdFailed("Failed to request MIM Interstitial, App Id missing");
             }
@@ -54,6 +58,7 @@ public class RFMMediatorMiMInterstitial implements RFMCustomInterstitial {
      */
     @Override
     public void reset() {
+        mAdReady = false;
         if(interstitial != null) {
             interstitial = null;
             mContext=null;
@@ -68,12 +73,22 @@ public class RFMMediatorMiMInterstitial implements RFMCustomInterstitial {
      */
     @Override
     public boolean display() {
-        if(interstitial != null) {
+        if(isReady()) {
             return interstitial.display();
         }
         return false;
     }
 
+    /**
+     * Utility method to check if the Ad finished loading and can be displayed. Apps check
+     * RFMAdView.isAdAvailableToDisplay() before calling RFMAdView.displayAd()
+     *
+     * @return true once onAdLoaded was reported, until the Ad is reset
+     */
+    private boolean isReady() {
+        return mAdReady && interstitial != null && interstitial.isAdAvailable();
+    }
+
     /**
      * Utility method to create Interstitial Ad
      *
@@ -130,6 +145,8 @@ public class RFMMediatorMiMInterstitial implements RFMCustomInterstitial {
                 @Override
                 public void requestCompleted(MMAd mmAd) {
                     Log.i(LOG_TAG, "Millennial Media Ad (" + mmAd.getApid() + ") caching completed successfully.");
+                    mAdReady = true;
+                    mTrace.end(true);
                     if(mListener != null) {
                         mListener.onAdLoaded();
                     }
@@ -137,7 +154,9 @@ public class RFMMediatorMiMInterstitial implements RFMCustomInterstitial {
 
                 @Override
                 public void requestFailed(MMAd mmAd, MMException e) {
+                    mAdReady = false;
                     Log.i(LOG_TAG, String.format("Millennial Media Ad (" + mmAd.getApid() + ") fetch request failed with error: %d %s.", e.getCode(), e.getMessage()));
+                    mTrace.end(false);
                     if(mListener != null) {
                         mListener.onAdFailed(String.format("Millennial Media Ad (" + mmAd.getApid() + ") fetch request failed with error: %d %s.", e.getCode(), e.getMessage()));
                     }
@@ -161,6 +180,16 @@ public class RFMMediatorMiMInterstitial implements RFMCustomInterstitial {
         interstitial.fetch();
     }
 
+    /**
+     * Initialize Millennial SDK once, called by RFMMediationWarmup on its background thread
+     *
+     * @param context
+     * @param appId not used by Millennial SDK init
+     */
+    public static void initializePartner(Context context, String appId) {
+        RFMMediatorMiMPartner.initialize(context);
+    }
+
     /**
      * Utility method to print all the parameters sent from RFM SDK
      */
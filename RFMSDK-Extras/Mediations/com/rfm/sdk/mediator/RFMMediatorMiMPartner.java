@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2016. Rubicon Project. All rights reserved
+ *
+ */
+
+package com.rfm.sdk.mediator;
+
+import android.content.Context;
+
+import com.millennialmedia.android.MMSDK;
+
+/**
+ * Millennial SDK initialization shared by the Millennial banner and interstitial mediators.
+ *
+ * The SDK is only initialized by RFMMediationWarmup on its background thread, once. The ad request
+ * path does not initialize it, as before the warmup existed.
+ */
+final class RFMMediatorMiMPartner {
+    private static final String PARTNER_KEY = "Millennial";
+
+    private RFMMediatorMiMPartner() {
+    }
+
+    /**
+     * Initialize Millennial SDK, waits for an initialization in progress, used by RFMMediationWarmup
+     *
+     * @param context
+     */
+    static synchronized void initialize(Context context) {
+        if(!RFMMediationWarmup.isPartnerInitialized(PARTNER_KEY)) {
+            MMSDK.initialize(context);
+            RFMMediationWarmup.setPartnerInitialized(PARTNER_KEY);
+        }
+    }
+}
@@ -24,6 +24,7 @@ public class RFMMediatorMoPubBanner implements RFMCustomBanner {
     RFMCustomBannerListener mListener;
     private final String LOG_TAG = "RFMMediatorMoPubBanner";
     private static final String PARAM_AD_ID = "adUnitId";
+    private RFMMediationTrace.ActiveSpan mTrace;
 
     /**
      * Implementation for requesting Banner Ad from MoPub via RFM Custom event
@@ -36,10 +37,12 @@ public class RFMMediatorMoPubBanner implements RFMCustomBanner {
     public void requestAd(Context context, Map<String, String> params, RFMCustomBannerListener listener) {
         mContext = context;
         mListener = listener;
+        mTrace = RFMMediationTrace.start(RFMMediationTrace.STAGE_MEDIATION, getClass().getName());
         if(createBannerAd(params)) {
             createAdListener();
             loadAd();
         } else {
+            mTrace.end(false);
             if(mListener != null) {
                 mListener.onAdFailed("Failed to request MoPub Ad, ad unit Id missing");
             }
@@ -56,6 +59,7 @@ public class RFMMediatorMoPubBanner implements RFMCustomBanner {
         if(mMoPubView != null) {
             mMoPubView.setBannerAdListener(null);
             mMoPubView.destroy();
+            mMoPubView = null;
             mContext=null;
             Log.v(LOG_TAG, "Clean up Mopub banner");
         }
@@ -101,6 +105,7 @@ public class RFMMediatorMoPubBanner implements RFMCustomBanner {
         mMoPubView.setBannerAdListener(new MoPubView.BannerAdListener() {
             @Override
             public void onBannerLoaded(MoPubView moPubView) {
+                mTrace.end(true);
                 if (mListener != null) {
                     mListener.onAdLoaded(mMoPubView);
                 }
@@ -108,6 +113,7 @@ public class RFMMediatorMoPubBanner implements RFMCustomBanner {
 
             @Override
             public void onBannerFailed(MoPubView moPubView, MoPubErrorCode moPubErrorCode) {
+                mTrace.end(false);
                 if (mListener != null) {
                     mListener.onAdFailed(moPubErrorCode.toString());
                 }
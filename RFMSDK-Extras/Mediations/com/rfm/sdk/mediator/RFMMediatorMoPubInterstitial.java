@@ -23,6 +23,8 @@ public class RFMMediatorMoPubInterstitial implements RFMCustomInterstitial {
     MoPubInterstitial mInterstitial;
     private static final String LOG_TAG = "MoPubInterstitial";
     private static final String PARAM_AD_ID = "adUnitId";
+    private boolean mAdReady;
+    private RFMMediationTrace.ActiveSpan mTrace;
 
     /**
      * Implementation for requesting Interstitial Ad from Admob via RFM Custom event
@@ -35,10 +37,12 @@ public class RFMMediatorMoPubInterstitial implements RFMCustomInterstitial {
     public void requestAd(Context context, Map<String, String> params, RFMCustomInterstitialListener listener) {
         mContext = context;
         mListener = listener;
+        mTrace = RFMMediationTrace.start(RFMMediationTrace.STAGE_MEDIATION, getClass().getName());
         if(createInterstitialAd(params)) {
             createAdListener();
             loadAd();
         } else {
+            mTrace.end(false);
             if(mListener != null) {
                 mListener.onAdFailed("Failed to request MoPub Interstitial, ad unit Id missing");
             }
@@ -51,6 +55,7 @@ public class RFMMediatorMoPubInterstitial implements RFMCustomInterstitial {
      */
     @Override
     public void reset() {
+        mAdReady = false;
         if (mInterstitial != null) {
             mInterstitial.setInterstitialAdListener(null);
             mInterstitial.destroy();
@@ -67,12 +72,22 @@ public class RFMMediatorMoPubInterstitial implements RFMCustomInterstitial {
      */
     @Override
     public boolean display() {
-        if(mInterstitial != null) {
+        if(isReady()) {
             return mInterstitial.show();
         }
         return false;
     }
 
+    /**
+     * Utility method to check if the Ad finished loading and can be displayed. Apps check
+     * RFMAdView.isAdAvailableToDisplay() before calling RFMAdView.displayAd()
+     *
+     * @return true once onAdLoaded was reported, until the Ad is reset
+     */
+    private boolean isReady() {
+        return mAdReady && mInterstitial != null && mInterstitial.isReady();
+    }
+
     /**
      * Utility method to create Interstitial Ad
      *
@@ -108,6 +123,8 @@ public class RFMMediatorMoPubInterstitial implements RFMCustomInterstitial {
             @Override
             public void onInterstitialLoaded(MoPubInterstitial mInterstitial) {
                 Log.i(LOG_TAG, "MoPub mInterstitial Ad loaded");
+                mAdReady = true;
+                mTrace.end(true);
                 if(mListener != null) {
                     mListener.onAdLoaded();
                 }
@@ -116,6 +133,8 @@ public class RFMMediatorMoPubInterstitial implements RFMCustomInterstitial {
             @Override
             public void onInterstitialFailed(MoPubInterstitial mInterstitial, MoPubErrorCode errorCode) {
                 Log.i(LOG_TAG, "MoPub mInterstitial Ad fetch request failed with error:" +errorCode.toString());
+                mAdReady = false;
+                mTrace.end(false);
                 if(mListener != null) {
                     mListener.onAdFailed( "MoPub mInterstitial Media Ad fetch request failed with error:" +errorCode.toString());
                 }
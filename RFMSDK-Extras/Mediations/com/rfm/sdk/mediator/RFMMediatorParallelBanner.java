@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 2016. Rubicon Project. All rights reserved
+ *
+ */
+
+package com.rfm.sdk.mediator;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+
+import com.rfm.sdk.ui.mediator.RFMCustomBanner;
+import com.rfm.sdk.ui.mediator.RFMCustomBannerListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Custom banner which requests every banner mediator of one priority tier at the same time.
+ *
+ * The tier is configured through the Custom Event params:
+ * 'mediators'   comma separated list of RFMCustomBanner class names, e.g. RFMAdRequest.MEDIATOR_MOPUB_BANNER
+ * 'tierTimeout' maximum time in ms to wait for the tier before failing over, defaults to 3000
+ * 'winPolicy'   'first' (default) to pick the first loaded ad, 'price' to pick the highest priced loaded ad
+ * '[index].key' parameter 'key' passed only to the mediator at position [index], e.g. '0.adUnitId' or '1.price'
+ *
+ * Mediators which do not win the tier are reset through RFMMediatorRegistry.
+ * Mediators with an open circuit in RFMMediatorHealth are skipped, and the tier timeout
+ * adapts to the p95 fill latency of the requested mediators. Mediators still pending when the tier
+ * completes are recorded as timed out, or without outcome if another mediator won first.
+ */
+public class RFMMediatorParallelBanner implements RFMCustomBanner {
+    Context mContext;
+    RFMCustomBannerListener mListener;
+    private static final String LOG_TAG = "RFMMediatorParallelBanner";
+    protected static final String PARAM_MEDIATORS = "mediators";
+    protected static final String PARAM_TIER_TIMEOUT = "tierTimeout";
+    protected static final String PARAM_WIN_POLICY = "winPolicy";
+    protected static final String PARAM_PRICE = "price";
+    protected static final String WIN_POLICY_FIRST = "first";
+    protected static final String WIN_POLICY_PRICE = "price";
+    private static final long DEFAULT_TIER_TIMEOUT = 3000;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final List<TierEntry> mTierEntries = new ArrayList<>();
+    private Runnable mTimeoutRunnable;
+    private TierEntry mWinner;
+    private boolean mPricePolicy;
+    private boolean mTierCompleted;
+    private long mRequestStartTime;
+    private RFMMediationTrace.ActiveSpan mTrace;
+    private boolean mFirstFillTraced;
+
+    /**
+     * Implementation for requesting Banner Ads from all mediators of a tier via RFM Custom event
+     *
+     * @param context
+     * @param params , will have mediators, tierTimeout, winPolicy, width, height and the per mediator parameters
+     * @param listener
+     */
+    @Override
+    public void requestAd(Context context, Map<String, String> params, RFMCustomBannerListener listener) {
+        resetTier();
+        mContext = context;
+        mListener = listener;
+        mRequestStartTime = SystemClock.elapsedRealtime();
+        RFMMediatorHealth.init(context);
+        mTrace = RFMMediationTrace.start(RFMMediationTrace.STAGE_PARALLEL_TIER, getClass().getName());
+        if(createTier(params)) {
+            startTimeout(params);
+            loadAds(params);
+        } else {
+            mTrace.end(false);
+            if(mListener != null) {
+                mListener.onAdFailed("Failed to request parallel tier, no valid mediators");
+            }
+        }
+    }
+
+    /**
+     * Called when Ad / UI containing Ad is closed
+     * Method should include all the clean up code
+     */
+    @Override
+    public void reset() {
+        resetTier();
+        mTierCompleted = true;
+        mContext = null;
+        Log.v(LOG_TAG, "Clean up parallel banner tier");
+    }
+
+    /**
+     * Method to do the needful for displaying Ad
+     *
+     * @return
+     */
+    @Override
+    public boolean display() {
+        if(mWinner != null) {
+            return mWinner.mediator.display();
+        }
+        return false;
+    }
+
+    /**
+     * Utility method to reset the mediators of a previous tier and clear all tier state
+     */
+    private void resetTier() {
+        cancelTimeout();
+        for(TierEntry entry : mTierEntries) {
+            RFMMediatorRegistry.reset(entry.mediator);
+        }
+        mTierEntries.clear();
+        mWinner = null;
+        mTierCompleted = false;
+        mFirstFillTraced = false;
+    }
+
+    /**
+     * Utility method to create one banner mediator per entry of the tier
+     *
+     * @param adParams
+     * @return true for success / false for failure
+     */
+    protected boolean createTier(Map<String, String> adParams) {
+        printAdParams(adParams);
+        String mediators = null;
+        if(adParams != null) {
+            mediators = adParams.get(PARAM_MEDIATORS);
+            mPricePolicy = WIN_POLICY_PRICE.equalsIgnoreCase(adParams.get(PARAM_WIN_POLICY));
+        }
+        if(mediators == null) {
+            return false;
+        }
+
+        String[] classNames = mediators.split(",");
+        for(int index = 0; index < classNames.length; index++) {
+            String className = classNames[index].trim();
+            if(!RFMMediatorHealth.isAvailable(className)) {
+                Log.v(LOG_TAG, "Skipping mediator " + className + ", circuit open after repeated failures");
+                continue;
+            }
+            try {
+                RFMCustomBanner mediator = RFMMediatorRegistry.create(className, RFMCustomBanner.class);
+                mTierEntries.add(new TierEntry(index, className, mediator));
+            } catch (Exception e) {
+                e.printStackTrace();
+                Log.v(LOG_TAG, "Failed to create mediator " + className + " for parallel tier");
+            }
+        }
+        return !mTierEntries.isEmpty();
+    }
+
+    /**
+     * Utility method to request Ad from every mediator of the tier
+     */
+    protected void loadAds(Map<String, String> adParams) {
+        for(TierEntry entry : mTierEntries) {
+            Map<String, String> mediatorParams = getMediatorParams(adParams, entry.index);
+            entry.price = parsePrice(mediatorParams.get(PARAM_PRICE));
+            Log.v(LOG_TAG, "Requesting Banner from tier mediator " + entry.className);
+            entry.mediator.requestAd(mContext, mediatorParams, new TierListener(entry));
+        }
+    }
+
+    /**
+     * Utility method to build the params for one mediator, shared params are overridden by '[index].key' params
+     *
+     * @param adParams
+     * @param index position of the mediator in the tier
+     * @return params for the mediator
+     */
+    private Map<String, String> getMediatorParams(Map<String, String> adParams, int index) {
+        Map<String, String> mediatorParams = new HashMap<>();
+        String prefix = index + ".";
+        for(Map.Entry<String, String> param : adParams.entrySet()) {
+            String key = param.getKey();
+            if(key.startsWith(prefix)) {
+                mediatorParams.put(key.substring(prefix.length()), param.getValue());
+            } else if(key.length() > 0 && !Character.isDigit(key.charAt(0)) && !mediatorParams.containsKey(key)) {
+                mediatorParams.put(key, param.getValue());
+            }
+        }
+        return mediatorParams;
+    }
+
+    private float parsePrice(String price) {
+        if(price == null) {
+            return 0;
+        }
+        try {
+            return Float.parseFloat(price);
+        } catch (NumberFormatException e) {
+            Log.v(LOG_TAG, "Invalid price " + price + " for tier mediator");
+            return 0;
+        }
+    }
+
+    /**
+     * Utility method to fail over once the tier timeout expires, the configured timeout is
+     * shortened to the slowest adaptive timeout of the tier mediators
+     */
+    private void startTimeout(Map<String, String> adParams) {
+        long maxTimeout = DEFAULT_TIER_TIMEOUT;
+        if(adParams != null && adParams.containsKey(PARAM_TIER_TIMEOUT)) {
+            try {
+                maxTimeout = Long.parseLong(adParams.get(PARAM_TIER_TIMEOUT));
+            } catch (NumberFormatException e) {
+                Log.v(LOG_TAG, "Invalid tier timeout, using default of " + DEFAULT_TIER_TIMEOUT + " ms");
+            }
+        }
+        long timeout = 0;
+        for(TierEntry entry : mTierEntries) {
+            timeout = Math.max(timeout, RFMMediatorHealth.getTimeout(entry.className, maxTimeout));
+        }
+        Log.v(LOG_TAG, "Parallel tier timeout " + timeout + " ms");
+        mTimeoutRunnable = new Runnable() {
+            @Override
+            public void run() {
+                Log.v(LOG_TAG, "Parallel tier timed out");
+                long elapsed = SystemClock.elapsedRealtime() - mRequestStartTime;
+                for(TierEntry entry : mTierEntries) {
+                    if(entry.state == TierEntry.STATE_PENDING) {
+                        RFMMediatorHealth.recordTimeout(entry.className, elapsed);
+                        entry.state = TierEntry.STATE_FAILED;
+                    }
+                }
+                completeTier(getBestLoadedEntry());
+            }
+        };
+        mHandler.postDelayed(mTimeoutRunnable, timeout);
+    }
+
+    private void cancelTimeout() {
+        if(mTimeoutRunnable != null) {
+            mHandler.removeCallbacks(mTimeoutRunnable);
+            mTimeoutRunnable = null;
+        }
+    }
+
+    private void onEntryLoaded(TierEntry entry, View adView) {
+        if(mTierCompleted || !mTierEntries.contains(entry)) {
+            return;
+        }
+        entry.state = TierEntry.STATE_LOADED;
+        entry.adView = adView;
+        RFMMediatorHealth.recordFill(entry.className, SystemClock.elapsedRealtime() - mRequestStartTime);
+        if(!mFirstFillTraced) {
+            mFirstFillTraced = true;
+            RFMMediationTrace.end(RFMMediationTrace.STAGE_FIRST_FILL, entry.className, mTrace.getStartNanos(), true);
+            Log.v(LOG_TAG, "Parallel tier first fill from " + entry.className + " after "
+                    + (SystemClock.elapsedRealtime() - mRequestStartTime) + " ms");
+        }
+        if(!mPricePolicy || isTierResponded()) {
+            completeTier(mPricePolicy ? getBestLoadedEntry() : entry);
+        }
+    }
+
+    private void onEntryFailed(TierEntry entry, String errorMessage) {
+        if(mTierCompleted || !mTierEntries.contains(entry)) {
+            return;
+        }
+        entry.state = TierEntry.STATE_FAILED;
+        RFMMediatorHealth.recordFailure(entry.className);
+        Log.v(LOG_TAG, "Tier mediator " + entry.className + " failed: " + errorMessage);
+        if(isTierResponded()) {
+            completeTier(getBestLoadedEntry());
+        }
+    }
+
+    private boolean isTierResponded() {
+        for(TierEntry entry : mTierEntries) {
+            if(entry.state == TierEntry.STATE_PENDING) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private TierEntry getBestLoadedEntry() {
+        TierEntry best = null;
+        for(TierEntry entry : mTierEntries) {
+            if(entry.state == TierEntry.STATE_LOADED && (best == null || entry.price > best.price)) {
+                best = entry;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Utility method to pick the winner of the tier and reset all the other mediators
+     *
+     * @param winner loaded entry or null if no mediator of the tier filled
+     */
+    private void completeTier(TierEntry winner) {
+        if(mTierCompleted) {
+            return;
+        }
+        mTierCompleted = true;
+        cancelTimeout();
+        mTrace.end(winner != null);
+        mWinner = winner;
+        int tierSize = mTierEntries.size();
+        for(TierEntry entry : mTierEntries) {
+            if(entry != winner) {
+                if(entry.state == TierEntry.STATE_PENDING) {
+                    RFMMediatorHealth.recordNoOutcome(entry.className);
+                }
+                RFMMediatorRegistry.reset(entry.mediator);
+            }
+        }
+        mTierEntries.clear();
+        if(winner != null) {
+            mTierEntries.add(winner);
+        }
+
+        if(mListener == null) {
+            return;
+        }
+        if(winner != null) {
+            Log.v(LOG_TAG, "Parallel tier won by " + winner.className + " after "
+                    + (SystemClock.elapsedRealtime() - mRequestStartTime) + " ms");
+            mListener.onAdLoaded(winner.adView);
+        } else {
+            mListener.onAdFailed("No fill from parallel tier of " + tierSize + " mediators");
+        }
+    }
+
+    /**
+     * Utility method to print all the parameters sent from RFM SDK
+     * @param params
+     */
+    protected void printAdParams(Map<String, String> params) {
+        if(params!= null) {
+            Log.v(LOG_TAG, "Ad params from RFM Server");
+            Set<String> keys = params.keySet();
+            for(String keyStr:keys) {
+                Log.v(LOG_TAG, "Key:"+keyStr+" | Value:"+params.get(keyStr));
+            }
+        } else {
+            Log.v(LOG_TAG, "No additional Ad params available from RFM Server");
+        }
+    }
+
+    /**
+     * State of one mediator in the tier
+     */
+    static class TierEntry {
+        static final int STATE_PENDING = 0;
+        static final int STATE_LOADED = 1;
+        static final int STATE_FAILED = 2;
+
+        final int index;
+        final String className;
+        final RFMCustomBanner mediator;
+        float price;
+        int state = STATE_PENDING;
+        View adView;
+
+        TierEntry(int index, String className, RFMCustomBanner mediator) {
+            this.index = index;
+            this.className = className;
+            this.mediator = mediator;
+        }
+    }
+
+    /**
+     * Listener for one mediator of the tier, callbacks are moved to the main thread
+     * so the tier state is only touched from there
+     */
+    private class TierListener implements RFMCustomBannerListener {
+        private final TierEntry mEntry;
+
+        TierListener(TierEntry entry) {
+            mEntry = entry;
+        }
+
+        @Override
+        public void onAdLoaded(final View view) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onEntryLoaded(mEntry, view);
+                }
+            });
+        }
+
+        @Override
+        public void onAdFailed(final String errorMessage) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onEntryFailed(mEntry, errorMessage);
+                }
+            });
+        }
+
+        @Override
+        public void onAdClicked() {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(mEntry == mWinner && mListener != null) {
+                        mListener.onAdClicked();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onAdExpanded() {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(mEntry == mWinner && mListener != null) {
+                        mListener.onAdExpanded();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onAdCollapsed() {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(mEntry == mWinner && mListener != null) {
+                        mListener.onAdCollapsed();
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016. Rubicon Project. All rights reserved
+ *
+ */
+
+package com.rfm.sdk.mediator;
+
+import android.util.Log;
+
+import com.rfm.sdk.ui.mediator.RFMCustomBanner;
+import com.rfm.sdk.ui.mediator.RFMCustomInterstitial;
+
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide registry of custom mediators.
+ *
+ * Class and constructor lookups are resolved once per mediator class name. Mediator instances are
+ * not pooled, they are cheap to create and hold the listener and context of their last request,
+ * so every ad request gets a new instance.
+ */
+public final class RFMMediatorRegistry {
+    private static final String LOG_TAG = "RFMMediatorRegistry";
+
+    private static final Map<String, Constructor<?>> sConstructors = new ConcurrentHashMap<>();
+
+    private RFMMediatorRegistry() {
+    }
+
+    /**
+     * Resolve the no argument constructor of a mediator, the lookup is done only once per class name
+     *
+     * @param className mediator class name, e.g. RFMAdRequest.MEDIATOR_MOPUB_BANNER
+     * @return cached constructor
+     * @throws Exception if the class is not available in the app
+     */
+    public static Constructor<?> getConstructor(String className) throws Exception {
+        Constructor<?> constructor = sConstructors.get(className);
+        if(constructor == null) {
+            constructor = Class.forName(className).getConstructor();
+            sConstructors.put(className, constructor);
+            Log.v(LOG_TAG, "Cached constructor for mediator " + className);
+        }
+        return constructor;
+    }
+
+    /**
+     * Create a new mediator through its cached constructor
+     *
+     * @param className mediator class name
+     * @param type expected mediator type, RFMCustomBanner or RFMCustomInterstitial
+     * @return mediator instance ready for requestAd
+     * @throws Exception if the mediator can not be created
+     */
+    public static <T> T create(String className, Class<T> type) throws Exception {
+        return type.cast(getConstructor(className).newInstance());
+    }
+
+    /**
+     * Reset a mediator which is no longer used
+     *
+     * @param mediator mediator instance, must not be used by the caller afterwards
+     */
+    public static void reset(Object mediator) {
+        if(mediator instanceof RFMCustomBanner) {
+            ((RFMCustomBanner) mediator).reset();
+        } else if(mediator instanceof RFMCustomInterstitial) {
+            ((RFMCustomInterstitial) mediator).reset();
+        }
+    }
+
+    /**
+     * Load the class and resolve the constructor of a mediator ahead of the first ad request
+     *
+     * @param className mediator class name
+     * @return true if the mediator is available in the app
+     */
+    public static boolean prewarm(String className) {
+        try {
+            getConstructor(className);
+            return true;
+        } catch (Exception e) {
+            Log.v(LOG_TAG, "Mediator " + className + " not available, " + e.toString());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2016. Rubicon Project. All rights reserved
+ *
+ */
+
+package com.rfm.sdk;
+
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Visibility driven loading and refresh for RFMAdViews in scrolling lists.
+ *
+ * One tracker is created per screen with its root view, and only registers a single pre-draw and
+ * scroll listener on that root. Visibility of all tracked ad views is computed in one batch, at
+ * most every CHECK_INTERVAL ms.
+ *
+ * A tracked ad view requests its ad once it comes within NEAR_VIEWPORT_RATIO screen heights or widths
+ * of the viewport, a request which is not accepted is retried with backoff. Once the ad is displayed,
+ * viewable time counts while at least half of the view is on screen. If a refresh interval is given,
+ * the tracker refreshes the ad and only counts down while the displayed ad is visible.
+ *
+ * All methods must be called from the main thread.
+ */
+public class RFMAdViewVisibilityTracker {
+    private static final String LOG_TAG = "RFMAdViewVisibility";
+    private static final long CHECK_INTERVAL = 100;
+    private static final long VISIBLE_CHECK_INTERVAL = 250;
+    private static final float NEAR_VIEWPORT_RATIO = 0.5f;
+    private static final float VIEWABLE_RATIO = 0.5f;
+    private static final long VIEWABLE_IMPRESSION_TIME = 1000;
+    private static final long MIN_REQUEST_RETRY_DELAY = 2000;
+    private static final long MAX_REQUEST_RETRY_DELAY = 60 * 1000;
+
+    private final View mRootView;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Map<RFMAdView, TrackedView> mTrackedViews = new WeakHashMap<>();
+    private final Rect mVisibleRect = new Rect();
+    private final int[] mLocation = new int[2];
+    private boolean mCheckScheduled;
+    private boolean mDestroyed;
+
+    /**
+     * Notified about viewability of tracked ad views
+     */
+    public interface ViewabilityListener {
+        /**
+         * Called once per ad when the view was continuously viewable for one second
+         *
+         * @param adView
+         * @param viewableTime total viewable time of the ad view in ms
+         */
+        void onViewableImpression(RFMAdView adView, long viewableTime);
+    }
+
+    private final ViewTreeObserver.OnPreDrawListener mPreDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            scheduleCheck(CHECK_INTERVAL);
+            return true;
+        }
+    };
+
+    private final ViewTreeObserver.OnScrollChangedListener mScrollChangedListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            scheduleCheck(CHECK_INTERVAL);
+        }
+    };
+
+    private final Runnable mCheckRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mCheckScheduled = false;
+            checkVisibility();
+        }
+    };
+
+    /**
+     * @param rootView root of the screen holding the ad views, e.g. activity.getWindow().getDecorView()
+     */
+    public RFMAdViewVisibilityTracker(View rootView) {
+        mRootView = rootView;
+        ViewTreeObserver observer = mRootView.getViewTreeObserver();
+        observer.addOnPreDrawListener(mPreDrawListener);
+        observer.addOnScrollChangedListener(mScrollChangedListener);
+    }
+
+    /**
+     * Track an ad view, its ad is requested once the view is near the viewport
+     *
+     * @param adView
+     * @param adRequest request used for the initial request and every refresh
+     * @param refreshInterval time in ms an ad must be visible before refresh, 0 to disable refresh
+     * @param listener may be null
+     */
+    public void track(RFMAdView adView, RFMAdRequest adRequest, long refreshInterval, ViewabilityListener listener) {
+        if(mDestroyed) {
+            return;
+        }
+        mTrackedViews.put(adView, new TrackedView(adRequest, refreshInterval, listener));
+        scheduleCheck(0);
+    }
+
+    /**
+     * Stop tracking an ad view
+     *
+     * @param adView
+     */
+    public void untrack(RFMAdView adView) {
+        mTrackedViews.remove(adView);
+    }
+
+    /**
+     * Total time the ad view was viewable since it was tracked
+     *
+     * @param adView
+     * @return time in ms, 0 if the view is not tracked
+     */
+    public long getViewableTime(RFMAdView adView) {
+        TrackedView tracked = mTrackedViews.get(adView);
+        return tracked != null ? tracked.viewableTime : 0;
+    }
+
+    /**
+     * Stop tracking all ad views and remove the listeners from the root view
+     */
+    public void destroy() {
+        mDestroyed = true;
+        mHandler.removeCallbacks(mCheckRunnable);
+        mTrackedViews.clear();
+        ViewTreeObserver observer = mRootView.getViewTreeObserver();
+        if(observer.isAlive()) {
+            observer.removeOnPreDrawListener(mPreDrawListener);
+            observer.removeOnScrollChangedListener(mScrollChangedListener);
+        }
+    }
+
+    private void scheduleCheck(long delay) {
+        if(mCheckScheduled || mDestroyed || mTrackedViews.isEmpty()) {
+            return;
+        }
+        mCheckScheduled = true;
+        mHandler.postDelayed(mCheckRunnable, delay);
+    }
+
+    /**
+     * Utility method to update visibility, lazy loading, refresh and viewable time of all tracked views
+     */
+    private void checkVisibility() {
+        long now = SystemClock.elapsedRealtime();
+        boolean anyVisible = false;
+        for(Map.Entry<RFMAdView, TrackedView> entry : new ArrayList<>(mTrackedViews.entrySet())) {
+            RFMAdView adView = entry.getKey();
+            TrackedView tracked = entry.getValue();
+            // Only time between two checks which both saw the view on screen is counted
+            long elapsed = tracked.visible ? now - tracked.lastCheck : 0;
+            tracked.lastCheck = now;
+            tracked.visible = false;
+
+            if(!tracked.requested) {
+                if(now >= tracked.requestRetryAt && isNearViewport(adView)) {
+                    requestAd(adView, tracked, now);
+                }
+                continue;
+            }
+
+            float visibleRatio = isAdDisplayed(adView) ? getVisibleRatio(adView) : 0;
+            if(visibleRatio <= 0) {
+                tracked.continuousViewableTime = 0;
+                continue;
+            }
+            anyVisible = true;
+            tracked.visible = true;
+            updateRefresh(adView, tracked, elapsed);
+            updateViewableTime(adView, tracked, visibleRatio, elapsed);
+        }
+        if(anyVisible) {
+            // Keep counting while ads are on screen, even if nothing is drawn
+            scheduleCheck(VISIBLE_CHECK_INTERVAL);
+        }
+    }
+
+    /**
+     * Utility method to request the initial ad, a request which is not accepted is retried after a backoff
+     */
+    private void requestAd(RFMAdView adView, TrackedView tracked, long now) {
+        Log.v(LOG_TAG, "Ad view near viewport, requesting ad");
+        tracked.requested = adView.requestRFMAd(tracked.adRequest);
+        if(tracked.requested) {
+            tracked.refreshRemaining = tracked.refreshInterval;
+            return;
+        }
+        Log.v(LOG_TAG, "Ad request not accepted, retrying in " + tracked.requestRetryDelay + " ms");
+        tracked.requestRetryAt = now + tracked.requestRetryDelay;
+        tracked.requestRetryDelay = Math.min(tracked.requestRetryDelay * 2, MAX_REQUEST_RETRY_DELAY);
+        // Check again once the backoff passed, even if nothing is drawn
+        mHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                scheduleCheck(0);
+            }
+        }, tracked.requestRetryAt - now);
+    }
+
+    private void updateRefresh(RFMAdView adView, TrackedView tracked, long elapsed) {
+        if(tracked.refreshInterval <= 0) {
+            return;
+        }
+        tracked.refreshRemaining -= elapsed;
+        if(tracked.refreshRemaining <= 0) {
+            Log.v(LOG_TAG, "Refreshing visible ad view");
+            adView.requestRFMAd(tracked.adRequest);
+            tracked.refreshRemaining = tracked.refreshInterval;
+            tracked.continuousViewableTime = 0;
+            tracked.impressionReported = false;
+        }
+    }
+
+    private void updateViewableTime(RFMAdView adView, TrackedView tracked, float visibleRatio, long elapsed) {
+        if(visibleRatio < VIEWABLE_RATIO) {
+            tracked.continuousViewableTime = 0;
+            return;
+        }
+        tracked.viewableTime += elapsed;
+        tracked.continuousViewableTime += elapsed;
+        if(!tracked.impressionReported && tracked.continuousViewableTime >= VIEWABLE_IMPRESSION_TIME) {
+            tracked.impressionReported = true;
+            if(tracked.listener != null) {
+                tracked.listener.onViewableImpression(adView, tracked.viewableTime);
+            }
+        }
+    }
+
+    /**
+     * Check if the ad view shows an ad, nothing is counted while its ad is being requested or failed
+     */
+    private boolean isAdDisplayed(RFMAdView adView) {
+        AdState.AdStateRO state = adView.getAdStateRO();
+        return state != null && (state.isAdInBannerView() || state.isAdResized());
+    }
+
+    /**
+     * Ratio of the ad view area currently on screen
+     */
+    private float getVisibleRatio(View view) {
+        int area = view.getWidth() * view.getHeight();
+        if(area <= 0 || !view.isShown() || !view.getGlobalVisibleRect(mVisibleRect)) {
+            return 0;
+        }
+        return (float) (mVisibleRect.width() * mVisibleRect.height()) / area;
+    }
+
+    /**
+     * Check if the view is on screen or within NEAR_VIEWPORT_RATIO screen heights and widths of it,
+     * both axes are checked so ads in horizontal carousels are loaded lazily as well
+     */
+    private boolean isNearViewport(View view) {
+        if(!view.isShown()) {
+            return false;
+        }
+        mRootView.getLocationOnScreen(mLocation);
+        int rootLeft = mLocation[0];
+        int rootTop = mLocation[1];
+        int rootWidth = mRootView.getWidth();
+        int rootHeight = mRootView.getHeight();
+        int horizontalMargin = (int) (rootWidth * NEAR_VIEWPORT_RATIO);
+        int verticalMargin = (int) (rootHeight * NEAR_VIEWPORT_RATIO);
+        view.getLocationOnScreen(mLocation);
+        int viewLeft = mLocation[0];
+        int viewTop = mLocation[1];
+        return viewLeft + view.getWidth() >= rootLeft - horizontalMargin
+                && viewLeft <= rootLeft + rootWidth + horizontalMargin
+                && viewTop + view.getHeight() >= rootTop - verticalMargin
+                && viewTop <= rootTop + rootHeight + verticalMargin;
+    }
+
+    /**
+     * Request, refresh and viewability state of one ad view
+     */
+    private static class TrackedView {
+        final RFMAdRequest adRequest;
+        final long refreshInterval;
+        final ViewabilityListener listener;
+        boolean requested;
+        long requestRetryAt;
+        long requestRetryDelay = MIN_REQUEST_RETRY_DELAY;
+        boolean visible;
+        long refreshRemaining;
+        long lastCheck;
+        long viewableTime;
+        long continuousViewableTime;
+        boolean impressionReported;
+
+        TrackedView(RFMAdRequest adRequest, long refreshInterval, ViewabilityListener listener) {
+            this.adRequest = adRequest;
+            this.refreshInterval = refreshInterval;
+            this.listener = listener;
+        }
+    }
+}